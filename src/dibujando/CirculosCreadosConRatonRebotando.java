@@ -1,13 +1,20 @@
 package dibujando;
 
-import java.awt.Color;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Random;
 
-import objetos.Circulo;
 import objetos.Punto;
 import objetos.Rectangulo;
+import simulacion.FaseAmplia;
+import simulacion.GrabadorEntradas;
+import simulacion.HiloSimulacion;
+import simulacion.Instantanea;
+import simulacion.RejillaEspacial;
+import simulacion.RelojPasoFijo;
+import simulacion.ReproductorEntradas;
+import simulacion.Simulacion;
 import utilidades.StdDraw;
 
 /**
@@ -21,88 +28,275 @@ import utilidades.StdDraw;
 public class CirculosCreadosConRatonRebotando {
     
     /**
-     * Variable booleana que controla el estado de si se ha pulsado recientemente el ratón.
+     * Número de pasos de simulación por segundo.
      */
-    private static boolean recienPulsado=false;
+    private static final double TICKS_POR_SEGUNDO = 100;
+
+    /**
+     * Número de frames dibujados por segundo.
+     */
+    private static final double FRAMES_POR_SEGUNDO = 60;
+
+    /**
+     * Número de círculos por defecto en el modo sin ventana.
+     */
+    private static final int CIRCULOS_HEADLESS = 100000;
+
+    /**
+     * Número de ticks por defecto en el modo sin ventana.
+     */
+    private static final long TICKS_HEADLESS = 10000;
+
+    /**
+     * Semilla del generador aleatorio en el modo sin ventana, para que sea repetible.
+     */
+    private static final long SEMILLA_HEADLESS = 42;
 
     /**
      * Método principal para ejecutar el programa.
+     * <p>
+     * Con el argumento {@code --headless [circulos] [ticks] [umbral] [choques] [continua]} se ejecuta la
+     * misma simulación sin ventana: no se inicializa StdDraw (ni AWT/Swing), se crean
+     * los círculos en posiciones aleatorias y se simula el número de ticks indicado
+     * lo más rápido posible, mostrando el rendimiento obtenido. El umbral es el
+     * número de círculos a partir del cual la actualización se reparte entre hilos, y
+     * {@code choques} el nombre de la fase amplia con la que los círculos chocan entre
+     * sí ({@code ninguna}, {@code rejilla}, {@code barrido}, {@code barrido-y} o
+     * {@code cuaternario}). Con {@code continua} los choques se detectan a lo largo
+     * de todo el tick.
+     * <p>
+     * Con {@code --grabar fichero} se ejecuta con ventana y se graban en el fichero
+     * la semilla aleatoria y todas las entradas con su tick. Con
+     * {@code --reproducir fichero} se repite sin ventana y lo más rápido posible la
+     * sesión grabada, mostrando el rendimiento obtenido.
+     * 
+     * @param args Argumentos de la línea de comandos
+     * @throws IOException si no se puede escribir o leer el registro de entradas
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && "--headless".equals(args[0])) {
+            int circulos = args.length > 1 ? Integer.parseInt(args[1]) : CIRCULOS_HEADLESS;
+            long ticks = args.length > 2 ? Long.parseLong(args[2]) : TICKS_HEADLESS;
+            int umbral = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+            FaseAmplia fase = FaseAmplia.crear(args.length > 4 ? args[4] : "ninguna");
+            boolean continua = args.length > 5 && "continua".equals(args[5]);
+            ejecutarSinVentana(circulos, ticks, umbral, fase, continua);
+        } else if (args.length > 1 && "--reproducir".equals(args[0]))
+            reproducir(Paths.get(args[1]));
+        else if (args.length > 1 && "--grabar".equals(args[0]))
+            ejecutarConVentana(Paths.get(args[1]));
+        else
+            ejecutarConVentana(null);
+    }
+
+    /**
+     * Crea la simulación del programa: la ventana de -100 a 100 en cada eje, con
+     * choques continuos entre círculos y la rejilla como fase amplia.
      * 
-     * @param args Argumentos de la línea de comandos (no utilizados)
-     * @param ventana Rectangulo que toma todo el tamaño de la ventana.
-     * @param circ Array List de circulos.
-     * @param r random para obtener numeros random.
-     * @param c circulo generado en las coordenadas de la posicion del raton.
-     * @param col define el color (aleatorio) del circulo generado.
-     * @param movXactual determina el movimiento de pixeles del eje x en el circulo
-     * @param movYactual determina el movimiento de pixeles del eje y en el circulo
-     * @param colision numero entero que define  el estado de el circulo.
-     */
-    public static void main(String[] args) {
+     * @return la simulación, todavía sin círculos.
+     */
+    private static Simulacion crearSimulacion() {
+        // Rectangulo que representa la ventana
+        Rectangulo ventana = new Rectangulo(new Punto(-100, 100), new Punto(100, -100));
+        
+        // Circulos dentro de la ventana, añadiremos un círculo por cada click
+        Simulacion sim = new Simulacion(ventana);
+        // los círculos también chocan entre sí; con las teclas se cambia la fase amplia
+        sim.setFaseAmplia(new RejillaEspacial());
+        sim.setContinua(true);
+        return sim;
+    }
+
+    /**
+     * Crea la ventana, con un círculo nuevo por cada click, y anima los círculos.
+     * 
+     * @param registro fichero en el que se graban las entradas, o null para no grabarlas.
+     * @throws IOException si no se puede crear el registro de entradas.
+     * @param hilo hilo que hace avanzar la simulación y publica instantáneas para dibujarlas.
+     * @param reloj reloj que marca el ritmo de los frames.
+     */
+    private static void ejecutarConVentana(Path registro) throws IOException {
         StdDraw.setXscale(-100, 100);
         StdDraw.setYscale(-100, 100);
         StdDraw.enableDoubleBuffering();
         
-        // Rectangulo que representa la ventana
-        Rectangulo ventana = new Rectangulo(new Punto(-100, 100), new Punto(100, -100));
+        Simulacion sim = crearSimulacion();
+        String fase = "rejilla";
         
-        // Circulos dentro de la ventana, añadiremos un círculo por cada click
-        List<Circulo> circ = new ArrayList<Circulo>();
+        // Una sola semilla por sesión: con ella y las entradas grabadas la sesión se puede repetir
+        long semilla = System.nanoTime();
+        Random random = new Random(semilla);
+        GrabadorEntradas grabador = registro == null ? null : new GrabadorEntradas(registro, semilla);
+        
+        // La física avanza a ritmo constante en su propio hilo; este hilo solo dibuja
+        // la última instantánea publicada y le pasa los cambios como tareas, que se
+        // graban en el hilo de simulación con el tick en el que se aplican
+        HiloSimulacion hilo = new HiloSimulacion(sim, TICKS_POR_SEGUNDO);
+        if (grabador != null)
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> terminarGrabacion(hilo, sim, grabador)));
+        hilo.iniciar();
+        RelojPasoFijo reloj = new RelojPasoFijo(TICKS_POR_SEGUNDO, FRAMES_POR_SEGUNDO);
                 
         for (;;) {
-            StdDraw.clear();
+            Instantanea instantanea = hilo.leer();
             
-            for (Circulo c : circ) {
-                c.dibujar();
-                c.mover();
-            }
+            StdDraw.clear();
+            instantanea.getCuerpos().dibujar(hilo.alfa(instantanea));
             
-            StdDraw.setPenColor(Color.BLUE);
-            StdDraw.text(0, 90, "Click para añadir círculos: " + circ.size());
+            StdDraw.setPenColor(StdDraw.BLUE);
+            StdDraw.text(0, 90, "Click para añadir círculos: " + instantanea.getCuerpos().tamanio());
+            StdDraw.text(0, 82, "Choques [n/r/b/y/c]: " + fase);
             
-            if (clickRaton()) {
-                Random r = new Random();
-                Circulo c = new Circulo(StdDraw.mouseX(), StdDraw.mouseY(), r.nextDouble(5, 10));
-                c.movimiento(r.nextDouble(-2, 2), r.nextDouble(-2, 2));
-                Color col = new Color(r.nextInt(256), r.nextInt(256), r.nextInt(256));
-                c.color(col);
-                circ.add(c);
+            while (StdDraw.hasNextKeyTyped()) {
+                String nueva = nombreFase(StdDraw.nextKeyTyped());
+                if (nueva != null) {
+                    FaseAmplia faseAmplia = FaseAmplia.crear(nueva);
+                    hilo.ejecutar(s -> {
+                        if (grabador != null)
+                            grabar(() -> grabador.fase(s.getTicks(), nueva));
+                        s.setFaseAmplia(faseAmplia);
+                    });
+                    fase = nueva;
+                }
             }
             
-            double movXactual = 0;
-            double movYactual = 0;
-            
-            for (Circulo c : circ) {
-                int colision = c.colision(ventana);
-                switch (colision) {
-                    case 1:
-                    case 2: // Colisión izq o dcha
-                        movXactual = c.getCentro().getMovX();
-                        movYactual = c.getCentro().getMovY();
-                        c.movimiento(-movXactual, movYactual);
-                        break;
-                    case 3:
-                    case 4: // Colisión arriba o abajo
-                        movXactual = c.getCentro().getMovX();
-                        movYactual = c.getCentro().getMovY();
-                        c.movimiento(movXactual, -movYactual);
-                        break;
-                    case 5:
-                    case 6:
-                    case 7:
-                    case 8: // Colisión en esquina (dos lados)
-                        movXactual = c.getCentro().getMovX();
-                        movYactual = c.getCentro().getMovY();
-                        c.movimiento(-movXactual, -movYactual);
-                        break;
+            // se recorren todos los eventos del ratón desde el frame anterior, así que
+            // dos clicks dentro del mismo frame crean dos círculos
+            while (StdDraw.hasNextMouseEvent()) {
+                if (StdDraw.nextMouseEvent() == StdDraw.MOUSE_PRESSED) {
+                    double x = StdDraw.mouseEventX();
+                    double y = StdDraw.mouseEventY();
+                    hilo.ejecutar(s -> {
+                        if (grabador != null)
+                            grabar(() -> grabador.click(s.getTicks(), x, y));
+                        s.generar(x, y, random);
+                    });
                 }
             }
             
             StdDraw.show();
-            StdDraw.pause(10);
+            reloj.esperarFrame();
         }
     }
 
+    /**
+     * Método para traducir una tecla al nombre de una fase amplia.
+     * 
+     * @param tecla la tecla pulsada.
+     * @return el nombre de la fase amplia, o null si la tecla no elige ninguna.
+     */
+    private static String nombreFase(char tecla) {
+        switch (tecla) {
+            case 'n': return "ninguna";
+            case 'r': return "rejilla";
+            case 'b': return "barrido";
+            case 'y': return "barrido-y";
+            case 'c': return "cuaternario";
+            default:  return null;
+        }
+    }
+
+    /**
+     * Acción de grabación que puede fallar al escribir el registro.
+     */
+    private interface Grabacion {
+        void grabar() throws IOException;
+    }
+
+    /**
+     * Indica si ha fallado alguna escritura del registro de entradas. Solo lo usan
+     * las tareas del hilo de simulación.
+     */
+    private static boolean grabacionFallida = false;
+
+    /**
+     * Método para grabar una entrada desde una tarea del hilo de simulación.
+     * Si no se puede escribir el registro, se avisa una vez por la salida de error
+     * y se deja de grabar, pero la simulación continúa: una excepción que saliera
+     * de la tarea terminaría el hilo de simulación.
+     * 
+     * @param grabacion la escritura de la entrada en el registro.
+     */
+    private static void grabar(Grabacion grabacion) {
+        if (grabacionFallida)
+            return;
+        try {
+            grabacion.grabar();
+        } catch (IOException e) {
+            grabacionFallida = true;
+            System.err.println("No se ha podido escribir el registro de entradas, se deja de grabar: " + e);
+        }
+    }
+
+    /**
+     * Método que para la simulación y cierra el registro de entradas al salir del programa.
+     * 
+     * @param hilo hilo de simulación a detener.
+     * @param sim simulación cuyo último tick se graba.
+     * @param grabador registro de entradas a cerrar.
+     */
+    private static void terminarGrabacion(HiloSimulacion hilo, Simulacion sim, GrabadorEntradas grabador) {
+        try {
+            hilo.detener();
+            grabador.cerrar(sim.getTicks());
+        } catch (IOException | InterruptedException e) {
+            System.err.println("No se ha podido cerrar el registro de entradas: " + e);
+        }
+    }
+
+    /**
+     * Repite sin ventana una sesión grabada y muestra por consola los ticks por segundo.
+     * 
+     * @param registro fichero con la sesión grabada.
+     * @throws IOException si no se puede leer el registro de entradas.
+     */
+    private static void reproducir(Path registro) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        ReproductorEntradas reproductor = new ReproductorEntradas(registro);
+        Simulacion sim = crearSimulacion();
+        
+        long inicio = System.nanoTime();
+        int entradas = reproductor.reproducir(sim);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.printf("%d entradas, %d círculos, %d ticks en %.3f s (%.0f ticks/s)%n",
+                entradas, sim.getCuerpos().tamanio(), sim.getTicks(), segundos, sim.getTicks() / segundos);
+    }
+
+    /**
+     * Ejecuta la simulación sin ventana y muestra por consola los ticks por segundo.
+     * 
+     * @param circulos número de círculos a crear en posiciones aleatorias.
+     * @param ticks número de ticks a simular.
+     * @param umbral número máximo de círculos que se actualizan en un solo hilo (0 para el valor por defecto).
+     * @param fase fase amplia para los choques entre círculos, o null si no chocan entre sí.
+     * @param continua true para usar la detección continua de colisiones.
+     */
+    private static void ejecutarSinVentana(int circulos, long ticks, int umbral, FaseAmplia fase,
+                                           boolean continua) {
+        System.setProperty("java.awt.headless", "true");
+        long inicio = System.nanoTime();
+        
+        Simulacion sim = new Simulacion(new Rectangulo(new Punto(-100, 100), new Punto(100, -100)));
+        if (umbral > 0)
+            sim.setUmbralParalelo(umbral);
+        sim.setFaseAmplia(fase);
+        sim.setContinua(continua);
+        Random r = new Random(SEMILLA_HEADLESS);
+        for (int i = 0; i < circulos; i++)
+            sim.generar(r.nextDouble(-90, 90), r.nextDouble(-90, 90), r);
+        
+        long creados = System.nanoTime();
+        for (long t = 0; t < ticks; t++)
+            sim.paso();
+        long fin = System.nanoTime();
+        
+        double segundos = (fin - creados) / 1e9;
+        System.out.printf("Arranque: %.1f ms, %d círculos, %d ticks en %.3f s%n",
+                (creados - inicio) / 1e6, circulos, ticks, segundos);
+        System.out.printf("%.0f ticks/s, %.3e círculos·tick/s%n",
+                ticks / segundos, (double) circulos * ticks / segundos);
+    }
+
     /**
      * Método para pintar los ejes coordenados.
      */
@@ -116,20 +310,4 @@ public class CirculosCreadosConRatonRebotando {
         StdDraw.text(98, 2, "x");
     }
 
-    /**
-     * Método para detectar si se ha hecho clic con el ratón.
-     * 
-     * @return true si se ha hecho clic, false de lo contrario
-     */
-    private static boolean clickRaton() {
-        if (StdDraw.isMousePressed()) {
-            if (!recienPulsado) {
-                recienPulsado = true;
-                return true;
-            }
-        } else
-            recienPulsado = false;
-        return false;
-    }
-
 }
@@ -0,0 +1,341 @@
+package objetos;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Esta clase representa un árbol cuaternario holgado (loose quadtree) de círculos y rectángulos.
+ * <p>
+ * Cada nodo cubre un cuadrado y tiene cuatro hijos que cubren sus cuadrantes, pero
+ * sus límites se amplían al doble de tamaño alrededor de su centro. Así cada figura
+ * se guarda en un único nodo, el más profundo cuyo cuadrante contiene su centro y
+ * cuyo tamaño es al menos el de la figura, sin tener que partirla ni repetirla en
+ * varios nodos. Insertar, eliminar y actualizar una figura que se ha movido cuesta
+ * tanto como la profundidad del árbol, y las consultas por punto o por región solo
+ * visitan los nodos cuyos límites ampliados las tocan.
+ * <p>
+ * Las figuras se guardan por referencia: si una figura cambia de posición o de
+ * tamaño hay que llamar a {@link #actualizar(Object)} para que el árbol lo sepa.
+ * Los nodos que se quedan vacíos al eliminar o mover figuras se liberan.
+ */
+public class ArbolCuaternario {
+
+    private static final int PROFUNDIDAD_MAXIMA = 16;
+
+    private final Nodo raiz;
+    private final int profundidadMaxima;
+    private final Map<Object, Nodo> nodoDe = new IdentityHashMap<Object, Nodo>();
+
+    // caja de la figura que se está colocando o comprobando: {minX, minY, maxX, maxY}
+    private final double[] caja = new double[4];
+
+    /**
+     * Constructor que inicializa un árbol vacío que cubre un rectángulo.
+     * Las figuras que quedan fuera del rectángulo se pueden insertar igualmente,
+     * pero se guardan en la raíz y se comprueban en todas las consultas.
+     *
+     * @param limites El rectángulo que cubre el árbol.
+     */
+    public ArbolCuaternario(Rectangulo limites) {
+        this(limites, PROFUNDIDAD_MAXIMA);
+    }
+
+    /**
+     * Constructor que inicializa un árbol vacío que cubre un rectángulo con una
+     * profundidad máxima dada.
+     *
+     * @param limites           El rectángulo que cubre el árbol.
+     * @param profundidadMaxima El número máximo de niveles por debajo de la raíz.
+     * @throws IllegalArgumentException Si el rectángulo es nulo o la profundidad es negativa.
+     */
+    public ArbolCuaternario(Rectangulo limites, int profundidadMaxima) {
+        if (limites == null)
+            throw new IllegalArgumentException("El árbol necesita un Rectangulo como límites");
+        if (profundidadMaxima < 0)
+            throw new IllegalArgumentException("La profundidad máxima no puede ser negativa");
+        Punto c = limites.centro();
+        double mitad = Math.max(limites.base(), limites.altura()) / 2;
+        this.raiz = new Nodo(null, 0, c.getX(), c.getY(), mitad);
+        this.profundidadMaxima = profundidadMaxima;
+    }
+
+    /**
+     * Obtiene el número de figuras del árbol.
+     *
+     * @return El número de figuras insertadas.
+     */
+    public int tamanio() {
+        return nodoDe.size();
+    }
+
+    /**
+     * Inserta un círculo en el árbol.
+     *
+     * @param c El círculo a insertar.
+     * @throws IllegalArgumentException Si el círculo es nulo o ya está en el árbol.
+     */
+    public void insertar(Circulo c) {
+        insertarFigura(c);
+    }
+
+    /**
+     * Inserta un rectángulo en el árbol.
+     *
+     * @param r El rectángulo a insertar.
+     * @throws IllegalArgumentException Si el rectángulo es nulo o ya está en el árbol.
+     */
+    public void insertar(Rectangulo r) {
+        insertarFigura(r);
+    }
+
+    /**
+     * Elimina una figura del árbol.
+     *
+     * @param figura El círculo o rectángulo a eliminar.
+     * @return true si la figura estaba en el árbol, false de lo contrario.
+     */
+    public boolean eliminar(Object figura) {
+        Nodo n = nodoDe.remove(figura);
+        if (n == null)
+            return false;
+        n.figuras.remove(figura);
+        podar(n);
+        return true;
+    }
+
+    /**
+     * Recoloca una figura que se ha movido o ha cambiado de tamaño.
+     * Si sigue correspondiendo al mismo nodo no se hace nada más.
+     *
+     * @param figura El círculo o rectángulo que ha cambiado.
+     * @throws IllegalArgumentException Si la figura no está en el árbol.
+     */
+    public void actualizar(Object figura) {
+        Nodo actual = nodoDe.get(figura);
+        if (actual == null)
+            throw new IllegalArgumentException("La figura no está en el árbol");
+        Nodo destino = buscarNodo(figura);
+        if (destino != actual) {
+            actual.figuras.remove(figura);
+            destino.figuras.add(figura);
+            nodoDe.put(figura, destino);
+            podar(actual);
+        }
+    }
+
+    /**
+     * Busca las figuras que contienen un punto.
+     *
+     * @param p El punto a buscar.
+     * @return Los círculos y rectángulos dentro de los cuales está el punto.
+     */
+    public List<Object> contienen(Punto p) {
+        List<Object> resultado = new ArrayList<Object>();
+        contienen(raiz, p.getX(), p.getY(), p, resultado);
+        return resultado;
+    }
+
+    /**
+     * Busca las figuras que están completamente dentro de un rectángulo.
+     *
+     * @param r El rectángulo que delimita la región.
+     * @return Los círculos y rectángulos que están dentro de la región.
+     */
+    public List<Object> dentroDe(Rectangulo r) {
+        List<Object> resultado = new ArrayList<Object>();
+        dentroDe(raiz, r.getSupIzq().getX(), r.getInfDer().getY(), r.getInfDer().getX(), r.getSupIzq().getY(),
+                r, null, resultado);
+        return resultado;
+    }
+
+    /**
+     * Busca las figuras que están completamente dentro de un círculo.
+     *
+     * @param c El círculo que delimita la región.
+     * @return Los círculos y rectángulos que están dentro de la región.
+     */
+    public List<Object> dentroDe(Circulo c) {
+        List<Object> resultado = new ArrayList<Object>();
+        double x = c.getCentro().getX();
+        double y = c.getCentro().getY();
+        double r = c.getRadio();
+        dentroDe(raiz, x - r, y - r, x + r, y + r, null, c, resultado);
+        return resultado;
+    }
+
+    /**
+     * Busca las figuras cuya caja envolvente se solapa con una caja. No crea
+     * ninguna lista, así que sirve para consultas repetidas.
+     *
+     * @param minX      La coordenada x izquierda de la caja.
+     * @param minY      La coordenada y inferior de la caja.
+     * @param maxX      La coordenada x derecha de la caja.
+     * @param maxY      La coordenada y superior de la caja.
+     * @param resultado La lista en la que se añaden los círculos y rectángulos encontrados.
+     */
+    public void solapan(double minX, double minY, double maxX, double maxY, List<Object> resultado) {
+        solapan(raiz, minX, minY, maxX, maxY, resultado);
+    }
+
+    private void insertarFigura(Object figura) {
+        if (figura == null)
+            throw new IllegalArgumentException("No se puede insertar null en el árbol");
+        if (nodoDe.containsKey(figura))
+            throw new IllegalArgumentException("La figura ya está en el árbol");
+        Nodo n = buscarNodo(figura);
+        n.figuras.add(figura);
+        nodoDe.put(figura, n);
+    }
+
+    // baja por el cuadrante del centro mientras la figura quepa en los hijos
+    private Nodo buscarNodo(Object figura) {
+        double[] l = limites(figura, caja);
+        double cx = (l[0] + l[2]) / 2;
+        double cy = (l[1] + l[3]) / 2;
+        double extension = Math.max(l[2] - l[0], l[3] - l[1]) / 2;
+
+        Nodo n = raiz;
+        if (Math.abs(cx - n.x) > n.mitad || Math.abs(cy - n.y) > n.mitad)
+            return n;
+        for (int profundidad = 0; profundidad < profundidadMaxima && extension <= n.mitad / 2; profundidad++)
+            n = n.hijo(cx >= n.x ? 1 : 0, cy >= n.y ? 1 : 0);
+        return n;
+    }
+
+    private void contienen(Nodo n, double x, double y, Punto p, List<Object> resultado) {
+        double holgura = 2 * n.mitad;
+        if (n != raiz && (Math.abs(x - n.x) > holgura || Math.abs(y - n.y) > holgura))
+            return;
+        for (Object f : n.figuras) {
+            if (f instanceof Circulo ? p.dentroDe((Circulo) f) : contiene((Rectangulo) f, x, y))
+                resultado.add(f);
+        }
+        if (n.hijos != null)
+            for (Nodo h : n.hijos)
+                if (h != null)
+                    contienen(h, x, y, p, resultado);
+    }
+
+    // región: caja [minX, maxX] x [minY, maxY] y el rectángulo o el círculo que la define
+    private void dentroDe(Nodo n, double minX, double minY, double maxX, double maxY,
+                          Rectangulo rect, Circulo circ, List<Object> resultado) {
+        double holgura = 2 * n.mitad;
+        if (n != raiz && (n.x + holgura < minX || n.x - holgura > maxX || n.y + holgura < minY || n.y - holgura > maxY))
+            return;
+        for (Object f : n.figuras) {
+            if (rect != null ? dentroDe(f, rect) : dentroDe(f, circ))
+                resultado.add(f);
+        }
+        if (n.hijos != null)
+            for (Nodo h : n.hijos)
+                if (h != null)
+                    dentroDe(h, minX, minY, maxX, maxY, rect, circ, resultado);
+    }
+
+    private void solapan(Nodo n, double minX, double minY, double maxX, double maxY, List<Object> resultado) {
+        double holgura = 2 * n.mitad;
+        if (n != raiz && (n.x + holgura < minX || n.x - holgura > maxX || n.y + holgura < minY || n.y - holgura > maxY))
+            return;
+        for (Object f : n.figuras) {
+            double[] l = limites(f, caja);
+            if (l[0] <= maxX && l[2] >= minX && l[1] <= maxY && l[3] >= minY)
+                resultado.add(f);
+        }
+        if (n.hijos != null)
+            for (Nodo h : n.hijos)
+                if (h != null)
+                    solapan(h, minX, minY, maxX, maxY, resultado);
+    }
+
+    // libera el nodo si se ha quedado sin figuras ni hijos, y después sus antecesores
+    private void podar(Nodo n) {
+        while (n != raiz && n.figuras.isEmpty() && n.hijos == null) {
+            Nodo padre = n.padre;
+            padre.hijos[n.cuadrante] = null;
+            if (padre.hijos[0] == null && padre.hijos[1] == null && padre.hijos[2] == null && padre.hijos[3] == null)
+                padre.hijos = null;
+            n = padre;
+        }
+    }
+
+    private static boolean contiene(Rectangulo r, double x, double y) {
+        return x > r.getSupIzq().getX() && x < r.getInfDer().getX() && y < r.getSupIzq().getY() && y > r.getInfDer().getY();
+    }
+
+    private boolean dentroDe(Object figura, Rectangulo r) {
+        if (figura instanceof Rectangulo)
+            return ((Rectangulo) figura).dentroDe(r);
+        double[] l = limites(figura, caja);
+        return l[0] > r.getSupIzq().getX() && l[3] < r.getSupIzq().getY() &&
+                l[2] < r.getInfDer().getX() && l[1] > r.getInfDer().getY();
+    }
+
+    private static boolean dentroDe(Object figura, Circulo c) {
+        if (figura instanceof Circulo) {
+            Circulo f = (Circulo) figura;
+            return f.getCentro().distancia(c.getCentro()) + f.getRadio() < c.getRadio();
+        }
+        Rectangulo r = (Rectangulo) figura;
+        return r.getSupIzq().dentroDe(c) && r.getInfDer().dentroDe(c) && r.infIzq().dentroDe(c) && r.supDer().dentroDe(c);
+    }
+
+    // escribe en l la caja que rodea la figura: {minX, minY, maxX, maxY}
+    private static double[] limites(Object figura, double[] l) {
+        if (figura instanceof Circulo) {
+            Circulo c = (Circulo) figura;
+            double x = c.getCentro().getX();
+            double y = c.getCentro().getY();
+            double r = c.getRadio();
+            l[0] = x - r;
+            l[1] = y - r;
+            l[2] = x + r;
+            l[3] = y + r;
+            return l;
+        }
+        if (figura instanceof Rectangulo) {
+            Rectangulo r = (Rectangulo) figura;
+            l[0] = r.getSupIzq().getX();
+            l[1] = r.getInfDer().getY();
+            l[2] = r.getInfDer().getX();
+            l[3] = r.getSupIzq().getY();
+            return l;
+        }
+        throw new IllegalArgumentException("El árbol solo admite objetos Circulo y Rectangulo");
+    }
+
+    /**
+     * Nodo del árbol: un cuadrado de centro (x, y) y lado 2 * mitad.
+     * Los hijos se crean la primera vez que se necesitan y se liberan al quedarse vacíos.
+     */
+    private static class Nodo {
+        final Nodo padre;
+        final int cuadrante;
+        final double x;
+        final double y;
+        final double mitad;
+        final List<Object> figuras = new ArrayList<Object>(0);
+        Nodo[] hijos;
+
+        Nodo(Nodo padre, int cuadrante, double x, double y, double mitad) {
+            this.padre = padre;
+            this.cuadrante = cuadrante;
+            this.x = x;
+            this.y = y;
+            this.mitad = mitad;
+        }
+
+        // cuadrante (0 = izquierda/abajo, 1 = derecha/arriba en cada eje)
+        Nodo hijo(int dx, int dy) {
+            if (hijos == null)
+                hijos = new Nodo[4];
+            int k = dy * 2 + dx;
+            if (hijos[k] == null) {
+                double m = mitad / 2;
+                hijos[k] = new Nodo(this, k, x + (dx == 1 ? m : -m), y + (dy == 1 ? m : -m), m);
+            }
+            return hijos[k];
+        }
+    }
+}
@@ -96,7 +96,7 @@ public class Circulo {
      * Dibuja el círculo relleno en el lienzo.
      */
     public void dibujar() {
-        StdDraw.setPenColor(centro.getColor());
+        StdDraw.setPenColor(centro.getColorArgb());
         StdDraw.filledCircle(centro.getX(), centro.getY(), radio);
     }
 
@@ -106,7 +106,7 @@ public class Circulo {
      * @param grosorContorno El grosor del contorno del círculo.
      */
     public void dibujar(double grosorContorno) {
-        StdDraw.setPenColor(centro.getColor());
+        StdDraw.setPenColor(centro.getColorArgb());
         StdDraw.setPenRadius(grosorContorno);
         StdDraw.circle(centro.getX(), centro.getY(), radio);
     }
@@ -148,8 +148,51 @@ public class Circulo {
         centro.setColor(c);
     }
 
+    /**
+     * Establece el color del círculo a partir de un color empaquetado en un entero.
+     *
+     * @param argb El color en formato ARGB.
+     */
+    public void color(int argb) {
+        centro.setColorArgb(argb);
+    }
+
+    /**
+     * Calcula qué lados de un rectángulo toca o atraviesa este círculo.
+     * Cada lado se comprueba una sola vez y se combina en la máscara sin saltos.
+     *
+     * @param r El rectángulo con el que se verifica la colisión.
+     * @return La máscara de lados tocados, combinación de {@link Lados#IZQUIERDA},
+     *         {@link Lados#DERECHA}, {@link Lados#ARRIBA} y {@link Lados#ABAJO}.
+     */
+    public int lados(Rectangulo r) {
+        double x = centro.getX();
+        double y = centro.getY();
+        return (x - radio <= r.getSupIzq().getX() ? Lados.IZQUIERDA : 0)
+                | (x + radio >= r.getInfDer().getX() ? Lados.DERECHA : 0)
+                | (y + radio >= r.getSupIzq().getY() ? Lados.ARRIBA : 0)
+                | (y - radio <= r.getInfDer().getY() ? Lados.ABAJO : 0);
+    }
+
+    /**
+     * Hace rebotar el círculo contra los lados de un rectángulo: invierte la
+     * velocidad en el eje x si toca el lado izquierdo o el derecho, y en el eje y
+     * si toca el superior o el inferior.
+     *
+     * @param r El rectángulo contra el que rebota el círculo.
+     * @return La máscara de lados tocados, como en {@link #lados(Rectangulo)}.
+     */
+    public int rebotar(Rectangulo r) {
+        int lados = lados(r);
+        centro.setMovX(centro.getMovX() * Lados.factorX(lados));
+        centro.setMovY(centro.getMovY() * Lados.factorY(lados));
+        return lados;
+    }
+
     /**
      * Verifica si hay colisión entre este círculo y un rectángulo dado.
+     * Se conserva por compatibilidad; {@link #lados(Rectangulo)} devuelve la misma
+     * información como máscara de bits.
      *
      * @param r El rectángulo con el que se verifica la colisión.
      * @return Un número que indica la zona de colisión:
@@ -164,24 +207,6 @@ public class Circulo {
      * 8 - Esquina inferior derecha
      */
     public int colision(Rectangulo r) {
-        int zonaColision = 0;
-        if (centro.getX() + radio >= r.getInfDer().getX())
-            zonaColision = 1;
-        if (centro.getX() - radio <= r.getSupIzq().getX())
-            zonaColision = 2;
-        if (centro.getY() + radio >= r.getSupIzq().getY())
-            zonaColision = 3;
-        if (centro.getY() - radio <= r.getInfDer().getY())
-            zonaColision = 4;
-        if (centro.getX() + radio >= r.getInfDer().getX() && centro.getY() + radio >= r.getSupIzq().getY())
-            zonaColision = 5;
-        if (centro.getX() - radio <= r.getSupIzq().getX() && centro.getY() + radio >= r.getSupIzq().getY())
-            zonaColision = 6;
-        if (centro.getX() - radio <= r.getSupIzq().getX() && centro.getY() - radio <= r.getInfDer().getY())
-            zonaColision = 7;
-        if (centro.getX() + radio >= r.getInfDer().getX() && centro.getY() - radio <= r.getInfDer().getY())
-            zonaColision = 8;
-
-        return zonaColision;
+        return Lados.zona(lados(r));
     }
 }
@@ -0,0 +1,887 @@
+package objetos;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import utilidades.StdDraw;
+
+/**
+ * Esta clase representa un conjunto de círculos almacenado por columnas.
+ * <p>
+ * En lugar de un objeto Circulo (con su Punto y su Color) por cuerpo, guarda la
+ * posición, la velocidad, el radio y el color empaquetado (ARGB) de cada círculo
+ * en arrays primitivos paralelos que crecen según se necesita. Las operaciones
+ * masivas {@link #mover()} y {@link #colision(Rectangulo)} recorren así memoria
+ * contigua sin seguir referencias.
+ */
+public class CirculoBuffer {
+
+    private static final int CAPACIDAD_INICIAL = 16;
+    private static final int MAX_REBOTES_POR_TICK = 4;
+
+    /**
+     * Número de bytes que ocupa cada círculo al guardarlo con {@link #guardar(FileChannel, long)}.
+     */
+    public static final int BYTES_POR_CIRCULO = 5 * Double.BYTES + Integer.BYTES + 1;
+
+    // bytes que se proyectan de una vez al guardar y cargar; las columnas más largas
+    // se proyectan por tramos, que así no llegan al límite de 2 GiB de una proyección
+    private static final int TAMANIO_TRAMO = 1 << 26;
+    private static final Object INSEGURO = buscarInseguro();
+    private static final Method LIBERAR = buscarLiberar();
+
+    private double[] x;
+    private double[] y;
+    private double[] movX;
+    private double[] movY;
+    private double[] radio;
+    private int[] color;
+    private double[] xAnterior;
+    private double[] yAnterior;
+    private boolean[] dormido;
+    // índices de los círculos despiertos, sin orden, y la posición de cada uno en esa lista
+    private int[] listaDespiertos;
+    private int[] posicionDespierto;
+    // posiciones interpoladas que se pasan a StdDraw al dibujar; se crean al dibujar por primera vez
+    private double[] xDibujo;
+    private double[] yDibujo;
+    private int tamanio;
+    private int dormidos;
+    private long vecesDormido;
+
+    /**
+     * Constructor que inicializa un buffer vacío con la capacidad por defecto.
+     */
+    public CirculoBuffer() {
+        this(CAPACIDAD_INICIAL);
+    }
+
+    /**
+     * Constructor que inicializa un buffer vacío con una capacidad inicial dada.
+     *
+     * @param capacidad El número de círculos que caben sin redimensionar.
+     * @throws IllegalArgumentException Si la capacidad es negativa.
+     */
+    public CirculoBuffer(int capacidad) {
+        if (capacidad < 0)
+            throw new IllegalArgumentException("La capacidad no puede ser negativa");
+        x = new double[capacidad];
+        y = new double[capacidad];
+        movX = new double[capacidad];
+        movY = new double[capacidad];
+        radio = new double[capacidad];
+        color = new int[capacidad];
+        xAnterior = new double[capacidad];
+        yAnterior = new double[capacidad];
+        dormido = new boolean[capacidad];
+        listaDespiertos = new int[capacidad];
+        posicionDespierto = new int[capacidad];
+    }
+
+    /**
+     * Obtiene el número de círculos almacenados.
+     *
+     * @return El número de círculos del buffer.
+     */
+    public int tamanio() {
+        return tamanio;
+    }
+
+    /**
+     * Añade un círculo al buffer.
+     *
+     * @param xCentro Coordenada x del centro del círculo.
+     * @param yCentro Coordenada y del centro del círculo.
+     * @param r       El radio del círculo.
+     * @param mX      La velocidad de movimiento en el eje x.
+     * @param mY      La velocidad de movimiento en el eje y.
+     * @param argb    El color del círculo empaquetado como ARGB.
+     * @return El índice del círculo añadido.
+     * @throws IllegalArgumentException Si el radio es menor o igual a cero.
+     */
+    public int agregar(double xCentro, double yCentro, double r, double mX, double mY, int argb) {
+        if (r <= 0)
+            throw new IllegalArgumentException("Un círculo debe tener radio positivo");
+        if (tamanio == x.length)
+            crecer(tamanio + 1);
+        int i = tamanio++;
+        x[i] = xCentro;
+        y[i] = yCentro;
+        movX[i] = mX;
+        movY[i] = mY;
+        radio[i] = r;
+        color[i] = argb;
+        xAnterior[i] = xCentro;
+        yAnterior[i] = yCentro;
+        dormido[i] = false;
+        listaDespiertos[i - dormidos] = i;
+        posicionDespierto[i] = i - dormidos;
+        return i;
+    }
+
+    /**
+     * Añade al buffer una copia del estado de un círculo.
+     *
+     * @param c El círculo a copiar.
+     * @return El índice del círculo añadido.
+     */
+    public int agregar(Circulo c) {
+        Punto p = c.getCentro();
+        return agregar(p.getX(), p.getY(), c.getRadio(), p.getMovX(), p.getMovY(), p.getColorArgb());
+    }
+
+    /**
+     * Vacía el buffer sin liberar su capacidad.
+     */
+    public void vaciar() {
+        tamanio = 0;
+        dormidos = 0;
+        vecesDormido++;
+    }
+
+    private void crecer(int minimo) {
+        int capacidad = Math.max(minimo, Math.max(CAPACIDAD_INICIAL, x.length + (x.length >> 1)));
+        x = Arrays.copyOf(x, capacidad);
+        y = Arrays.copyOf(y, capacidad);
+        movX = Arrays.copyOf(movX, capacidad);
+        movY = Arrays.copyOf(movY, capacidad);
+        radio = Arrays.copyOf(radio, capacidad);
+        color = Arrays.copyOf(color, capacidad);
+        xAnterior = Arrays.copyOf(xAnterior, capacidad);
+        yAnterior = Arrays.copyOf(yAnterior, capacidad);
+        dormido = Arrays.copyOf(dormido, capacidad);
+        listaDespiertos = Arrays.copyOf(listaDespiertos, capacidad);
+        posicionDespierto = Arrays.copyOf(posicionDespierto, capacidad);
+    }
+
+    /**
+     * Obtiene la coordenada x del centro de un círculo.
+     *
+     * @param i El índice del círculo.
+     * @return La coordenada x del centro.
+     */
+    public double getX(int i) {
+        return x[i];
+    }
+
+    /**
+     * Obtiene la coordenada y del centro de un círculo.
+     *
+     * @param i El índice del círculo.
+     * @return La coordenada y del centro.
+     */
+    public double getY(int i) {
+        return y[i];
+    }
+
+    /**
+     * Obtiene la velocidad de movimiento en el eje x de un círculo.
+     *
+     * @param i El índice del círculo.
+     * @return La velocidad de movimiento en el eje x.
+     */
+    public double getMovX(int i) {
+        return movX[i];
+    }
+
+    /**
+     * Obtiene la velocidad de movimiento en el eje y de un círculo.
+     *
+     * @param i El índice del círculo.
+     * @return La velocidad de movimiento en el eje y.
+     */
+    public double getMovY(int i) {
+        return movY[i];
+    }
+
+    /**
+     * Obtiene el radio de un círculo.
+     *
+     * @param i El índice del círculo.
+     * @return El radio del círculo.
+     */
+    public double getRadio(int i) {
+        return radio[i];
+    }
+
+    /**
+     * Obtiene el color empaquetado (ARGB) de un círculo.
+     *
+     * @param i El índice del círculo.
+     * @return El color del círculo como ARGB.
+     */
+    public int getColor(int i) {
+        return color[i];
+    }
+
+    /**
+     * Establece la posición del centro de un círculo.
+     *
+     * @param i       El índice del círculo.
+     * @param xCentro La nueva coordenada x del centro.
+     * @param yCentro La nueva coordenada y del centro.
+     */
+    public void posicion(int i, double xCentro, double yCentro) {
+        x[i] = xCentro;
+        y[i] = yCentro;
+    }
+
+    /**
+     * Establece las velocidades de movimiento de un círculo.
+     *
+     * @param i  El índice del círculo.
+     * @param mX La velocidad de movimiento en el eje x.
+     * @param mY La velocidad de movimiento en el eje y.
+     */
+    public void movimiento(int i, double mX, double mY) {
+        movX[i] = mX;
+        movY[i] = mY;
+    }
+
+    /**
+     * Indica si un círculo está dormido.
+     *
+     * @param i El índice del círculo.
+     * @return true si el círculo está dormido, false si está despierto.
+     */
+    public boolean isDormido(int i) {
+        return dormido[i];
+    }
+
+    /**
+     * Duerme un círculo: detiene su movimiento y lo marca para que la integración
+     * y la fase amplia lo salten hasta que algo lo despierte.
+     *
+     * @param i El índice del círculo.
+     */
+    public void dormir(int i) {
+        movX[i] = 0;
+        movY[i] = 0;
+        if (!dormido[i]) {
+            dormido[i] = true;
+            dormidos++;
+            vecesDormido++;
+            // el último de la lista ocupa el hueco
+            int k = posicionDespierto[i];
+            int ultimo = listaDespiertos[tamanio - dormidos];
+            listaDespiertos[k] = ultimo;
+            posicionDespierto[ultimo] = k;
+        }
+    }
+
+    /**
+     * Despierta un círculo dormido. Si ya estaba despierto no hace nada.
+     *
+     * @param i El índice del círculo.
+     */
+    public void despertar(int i) {
+        if (dormido[i]) {
+            dormido[i] = false;
+            int k = tamanio - dormidos;
+            listaDespiertos[k] = i;
+            posicionDespierto[i] = k;
+            dormidos--;
+        }
+    }
+
+    /**
+     * Obtiene el número de círculos despiertos.
+     *
+     * @return El número de círculos que no están dormidos.
+     */
+    public int despiertos() {
+        return tamanio - dormidos;
+    }
+
+    /**
+     * Obtiene cuántas veces se ha dormido algún círculo. También aumenta cuando el
+     * buffer se vacía o se sustituye su contenido, así que quien siga los círculos
+     * dormidos sabe que tiene que volver a mirarlos todos si aumenta más de lo que
+     * esperaba.
+     *
+     * @return El número de veces que un círculo despierto se ha dormido.
+     */
+    public long getVecesDormido() {
+        return vecesDormido;
+    }
+
+    /**
+     * Obtiene uno de los círculos despiertos. Recorrerlos con este método cuesta
+     * tanto como el número de círculos despiertos, no como el total. El orden no
+     * está definido y cambia al dormir o despertar círculos.
+     *
+     * @param k La posición en la lista de círculos despiertos, de 0 a {@link #despiertos()} - 1.
+     * @return El índice del círculo despierto.
+     */
+    public int getDespierto(int k) {
+        return listaDespiertos[k];
+    }
+
+    /**
+     * Copia los índices de los círculos despiertos en un array.
+     *
+     * @param destino El array en el que se copian, con sitio para {@link #despiertos()} índices.
+     * @return El número de índices copiados.
+     */
+    public int copiarDespiertos(int[] destino) {
+        int m = tamanio - dormidos;
+        System.arraycopy(listaDespiertos, 0, destino, 0, m);
+        return m;
+    }
+
+    /**
+     * Obtiene un Circulo con el estado actual del cuerpo indicado.
+     * El círculo devuelto es una copia: para guardar los cambios hechos
+     * sobre él hay que usar {@link #setCirculo(int, Circulo)}.
+     *
+     * @param i El índice del círculo.
+     * @return Un Circulo con la posición, velocidad, radio y color del cuerpo.
+     */
+    public Circulo getCirculo(int i) {
+        Circulo c = new Circulo(x[i], y[i], radio[i]);
+        c.movimiento(movX[i], movY[i]);
+        c.color(color[i]);
+        return c;
+    }
+
+    /**
+     * Sustituye el estado del cuerpo indicado por el de un Circulo.
+     *
+     * @param i El índice del círculo.
+     * @param c El círculo cuyo estado se copia.
+     */
+    public void setCirculo(int i, Circulo c) {
+        Punto p = c.getCentro();
+        x[i] = p.getX();
+        y[i] = p.getY();
+        movX[i] = p.getMovX();
+        movY[i] = p.getMovY();
+        radio[i] = c.getRadio();
+        color[i] = p.getColorArgb();
+    }
+
+    /**
+     * Verifica si dos círculos del buffer se superponen.
+     * Es el equivalente de {@link Circulo#seSuperpone(Circulo)}.
+     *
+     * @param i El índice del primer círculo.
+     * @param j El índice del segundo círculo.
+     * @return true si los círculos se superponen, false en caso contrario.
+     */
+    public boolean seSuperponen(int i, int j) {
+        double dx = x[i] - x[j];
+        double dy = y[i] - y[j];
+        double r = radio[i] + radio[j];
+        return dx * dx + dy * dy < r * r;
+    }
+
+    /**
+     * Mueve todos los círculos de acuerdo con sus velocidades actuales.
+     */
+    public void mover() {
+        mover(0, tamanio);
+    }
+
+    /**
+     * Mueve los círculos de un rango de acuerdo con sus velocidades actuales.
+     *
+     * @param desde El primer índice del rango (incluido).
+     * @param hasta El último índice del rango (excluido).
+     */
+    public void mover(int desde, int hasta) {
+        double[] x = this.x, y = this.y, movX = this.movX, movY = this.movY;
+        for (int i = desde; i < hasta; i++) {
+            x[i] += movX[i];
+            y[i] += movY[i];
+        }
+    }
+
+    /**
+     * Hace rebotar todos los círculos contra los lados de un rectángulo.
+     * Equivale a llamar a {@link Circulo#rebotar(Rectangulo)} para cada círculo.
+     *
+     * @param r El rectángulo contra el que rebotan los círculos.
+     */
+    public void colision(Rectangulo r) {
+        colision(r, 0, tamanio);
+    }
+
+    /**
+     * Hace rebotar los círculos de un rango contra los lados de un rectángulo.
+     *
+     * @param r     El rectángulo contra el que rebotan los círculos.
+     * @param desde El primer índice del rango (incluido).
+     * @param hasta El último índice del rango (excluido).
+     */
+    public void colision(Rectangulo r, int desde, int hasta) {
+        double izq = r.getSupIzq().getX();
+        double sup = r.getSupIzq().getY();
+        double der = r.getInfDer().getX();
+        double inf = r.getInfDer().getY();
+        double[] x = this.x, y = this.y, movX = this.movX, movY = this.movY, radio = this.radio;
+        for (int i = desde; i < hasta; i++) {
+            double ri = radio[i];
+            if (x[i] + ri >= der || x[i] - ri <= izq)
+                movX[i] = -movX[i];
+            if (y[i] + ri >= sup || y[i] - ri <= inf)
+                movY[i] = -movY[i];
+        }
+    }
+
+    /**
+     * Mueve todos los círculos y los hace rebotar contra los lados de un rectángulo
+     * en una sola pasada. El resultado es idéntico a llamar a {@link #mover()} y
+     * después a {@link #colision(Rectangulo)}.
+     *
+     * @param r El rectángulo contra el que rebotan los círculos.
+     */
+    public void moverYRebotar(Rectangulo r) {
+        moverYRebotar(r, 0, tamanio);
+    }
+
+    /**
+     * Mueve los círculos de un rango y los hace rebotar contra los lados de un
+     * rectángulo en una sola pasada.
+     * <p>
+     * Cada posición y velocidad se lee y se escribe una sola vez, y el rebote se
+     * calcula como un factor -1/1 elegido sin saltos en lugar de con una cadena de
+     * if, así que el bucle no depende de la predicción de saltos y el compilador JIT
+     * puede vectorizarlo con el ancho de vector que tenga la máquina.
+     *
+     * @param r     El rectángulo contra el que rebotan los círculos.
+     * @param desde El primer índice del rango (incluido).
+     * @param hasta El último índice del rango (excluido).
+     */
+    public void moverYRebotar(Rectangulo r, int desde, int hasta) {
+        double izq = r.getSupIzq().getX();
+        double sup = r.getSupIzq().getY();
+        double der = r.getInfDer().getX();
+        double inf = r.getInfDer().getY();
+        double[] x = this.x, y = this.y, movX = this.movX, movY = this.movY, radio = this.radio;
+        for (int i = desde; i < hasta; i++) {
+            double ri = radio[i];
+            double xi = x[i] + movX[i];
+            double yi = y[i] + movY[i];
+            x[i] = xi;
+            y[i] = yi;
+            double signoX = (xi + ri >= der) | (xi - ri <= izq) ? -1.0 : 1.0;
+            double signoY = (yi + ri >= sup) | (yi - ri <= inf) ? -1.0 : 1.0;
+            movX[i] *= signoX;
+            movY[i] *= signoY;
+        }
+    }
+
+    /**
+     * Mueve y hace rebotar contra los lados de un rectángulo solo los círculos de
+     * una lista de índices, como {@link #moverYRebotar(Rectangulo, int, int)}.
+     * Sirve para recorrer únicamente los círculos despiertos.
+     *
+     * @param r       El rectángulo contra el que rebotan los círculos.
+     * @param indices Los índices de los círculos a mover.
+     * @param desde   La primera posición de la lista (incluida).
+     * @param hasta   La última posición de la lista (excluida).
+     */
+    public void moverYRebotar(Rectangulo r, int[] indices, int desde, int hasta) {
+        double izq = r.getSupIzq().getX();
+        double sup = r.getSupIzq().getY();
+        double der = r.getInfDer().getX();
+        double inf = r.getInfDer().getY();
+        double[] x = this.x, y = this.y, movX = this.movX, movY = this.movY, radio = this.radio;
+        for (int k = desde; k < hasta; k++) {
+            int i = indices[k];
+            double ri = radio[i];
+            double xi = x[i] + movX[i];
+            double yi = y[i] + movY[i];
+            x[i] = xi;
+            y[i] = yi;
+            double signoX = (xi + ri >= der) | (xi - ri <= izq) ? -1.0 : 1.0;
+            double signoY = (yi + ri >= sup) | (yi - ri <= inf) ? -1.0 : 1.0;
+            movX[i] *= signoX;
+            movY[i] *= signoY;
+        }
+    }
+
+    /**
+     * Mueve todos los círculos con detección continua de colisiones contra los
+     * lados de un rectángulo.
+     *
+     * @param r El rectángulo contra el que rebotan los círculos.
+     */
+    public void moverContinuo(Rectangulo r) {
+        moverContinuo(r, 0, tamanio);
+    }
+
+    /**
+     * Mueve los círculos de un rango con detección continua de colisiones contra
+     * los lados de un rectángulo.
+     * <p>
+     * En lugar de comprobar la superposición solo en la posición final, calcula en
+     * qué instante del tick el círculo toca cada lado, lo lleva hasta ese punto,
+     * invierte la velocidad del eje y recorre el resto del tick con la velocidad
+     * nueva. Así un círculo rápido no atraviesa la pared, y como solo rebota cuando
+     * se mueve hacia ella, tampoco se queda pegado invirtiendo la velocidad en cada tick.
+     *
+     * @param r     El rectángulo contra el que rebotan los círculos.
+     * @param desde El primer índice del rango (incluido).
+     * @param hasta El último índice del rango (excluido).
+     */
+    public void moverContinuo(Rectangulo r, int desde, int hasta) {
+        double izq = r.getSupIzq().getX();
+        double sup = r.getSupIzq().getY();
+        double der = r.getInfDer().getX();
+        double inf = r.getInfDer().getY();
+        for (int i = desde; i < hasta; i++)
+            moverContinuo(i, izq, sup, der, inf);
+    }
+
+    /**
+     * Mueve con detección continua de colisiones contra los lados de un rectángulo
+     * solo los círculos de una lista de índices, como
+     * {@link #moverContinuo(Rectangulo, int, int)}.
+     *
+     * @param r       El rectángulo contra el que rebotan los círculos.
+     * @param indices Los índices de los círculos a mover.
+     * @param desde   La primera posición de la lista (incluida).
+     * @param hasta   La última posición de la lista (excluida).
+     */
+    public void moverContinuo(Rectangulo r, int[] indices, int desde, int hasta) {
+        double izq = r.getSupIzq().getX();
+        double sup = r.getSupIzq().getY();
+        double der = r.getInfDer().getX();
+        double inf = r.getInfDer().getY();
+        for (int k = desde; k < hasta; k++)
+            moverContinuo(indices[k], izq, sup, der, inf);
+    }
+
+    private void moverContinuo(int i, double izq, double sup, double der, double inf) {
+        double ri = radio[i];
+        double xi = x[i], yi = y[i], vx = movX[i], vy = movY[i];
+        double resto = 1;
+        for (int rebotes = 0; resto > 0; rebotes++) {
+            double tx = impacto(xi, vx, izq + ri, der - ri);
+            double ty = impacto(yi, vy, inf + ri, sup - ri);
+            double t = Math.min(tx, ty);
+            if (t >= resto || rebotes == MAX_REBOTES_POR_TICK) {
+                xi += vx * resto;
+                yi += vy * resto;
+                break;
+            }
+            xi += vx * t;
+            yi += vy * t;
+            if (tx == t)
+                vx = -vx;
+            if (ty == t)
+                vy = -vy;
+            resto -= t;
+        }
+        x[i] = xi;
+        y[i] = yi;
+        movX[i] = vx;
+        movY[i] = vy;
+    }
+
+    // fracción de tick hasta que la coordenada c, con velocidad v, alcanza el límite
+    // hacia el que se mueve; 0 si ya lo ha pasado e infinito si se aleja de ambos
+    private static double impacto(double c, double v, double minimo, double maximo) {
+        if (v > 0)
+            return Math.max(0, (maximo - c) / v);
+        if (v < 0)
+            return Math.max(0, (minimo - c) / v);
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Calcula el instante del tick en que dos círculos del buffer empiezan a tocarse
+     * si ambos se mueven en línea recta con sus velocidades actuales.
+     *
+     * @param i El índice del primer círculo.
+     * @param j El índice del segundo círculo.
+     * @return La fracción del tick (entre 0 y 1) en la que chocan, 0 si ya se
+     *         superponen y se están acercando, o infinito si no chocan en este tick.
+     */
+    public double tiempoImpacto(int i, int j) {
+        double px = x[i] - x[j];
+        double py = y[i] - y[j];
+        double vx = movX[i] - movX[j];
+        double vy = movY[i] - movY[j];
+        double r = radio[i] + radio[j];
+        double b = px * vx + py * vy;
+        double c = px * px + py * py - r * r;
+        if (b >= 0)
+            return Double.POSITIVE_INFINITY;   // se alejan (o no se mueven entre sí)
+        if (c <= 0)
+            return 0;
+        double a = vx * vx + vy * vy;
+        double discriminante = b * b - a * c;
+        if (discriminante < 0)
+            return Double.POSITIVE_INFINITY;
+        double t = (-b - Math.sqrt(discriminante)) / a;
+        return t <= 1 ? t : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Sustituye el contenido de este buffer por una copia de otro, reutilizando
+     * la capacidad que ya tiene.
+     *
+     * @param otro El buffer a copiar.
+     */
+    public void copiarDe(CirculoBuffer otro) {
+        int n = otro.tamanio;
+        if (x.length < n)
+            crecer(n);
+        System.arraycopy(otro.x, 0, x, 0, n);
+        System.arraycopy(otro.y, 0, y, 0, n);
+        System.arraycopy(otro.movX, 0, movX, 0, n);
+        System.arraycopy(otro.movY, 0, movY, 0, n);
+        System.arraycopy(otro.radio, 0, radio, 0, n);
+        System.arraycopy(otro.color, 0, color, 0, n);
+        System.arraycopy(otro.xAnterior, 0, xAnterior, 0, n);
+        System.arraycopy(otro.yAnterior, 0, yAnterior, 0, n);
+        System.arraycopy(otro.dormido, 0, dormido, 0, n);
+        System.arraycopy(otro.listaDespiertos, 0, listaDespiertos, 0, n - otro.dormidos);
+        System.arraycopy(otro.posicionDespierto, 0, posicionDespierto, 0, n);
+        tamanio = n;
+        dormidos = otro.dormidos;
+        vecesDormido++;
+    }
+
+    /**
+     * Guarda los círculos en un fichero a partir de una posición, por columnas:
+     * todas las x, todas las y, las velocidades, los radios, los colores y por
+     * último si cada círculo está dormido, en orden little-endian. Cada columna se
+     * copia de una vez a una proyección en memoria de su región del fichero, por
+     * tramos si es muy larga, y cada proyección se libera en cuanto se ha copiado,
+     * así que al volver no queda ninguna abierta.
+     *
+     * @param canal    El canal del fichero, abierto para lectura y escritura.
+     * @param posicion La posición del fichero en la que empieza la primera columna.
+     * @return El número de bytes escritos.
+     * @throws IOException Si no se puede escribir el fichero.
+     */
+    public long guardar(FileChannel canal, long posicion) throws IOException {
+        int n = tamanio;
+        long p = posicion;
+        for (double[] columna : new double[][] { x, y, movX, movY, radio })
+            p = escribirColumna(canal, p, columna, n);
+        p = escribirColumna(canal, p, color, n);
+        p = escribirColumna(canal, p, dormido, n);
+        return p - posicion;
+    }
+
+    /**
+     * Sustituye el contenido del buffer por los círculos guardados con
+     * {@link #guardar(FileChannel, long)}. Cada columna se copia de una vez desde
+     * una proyección en memoria de su región del fichero a su array, sin pasar por
+     * objetos Circulo, y la proyección se libera en cuanto se ha copiado. La
+     * posición anterior de cada círculo es la cargada.
+     *
+     * @param canal    El canal del fichero, abierto para lectura.
+     * @param posicion La posición del fichero en la que empieza la primera columna.
+     * @param n        El número de círculos guardados.
+     * @throws IOException Si no se puede leer el fichero.
+     * @throws IllegalArgumentException Si n es negativo o el fichero es demasiado corto.
+     */
+    public void cargar(FileChannel canal, long posicion, int n) throws IOException {
+        if (n < 0)
+            throw new IllegalArgumentException("El número de círculos no puede ser negativo");
+        if (posicion + (long) n * BYTES_POR_CIRCULO > canal.size())
+            throw new IllegalArgumentException("El fichero no contiene " + n + " círculos");
+        if (x.length < n)
+            crecer(n);
+        long p = posicion;
+        for (double[] columna : new double[][] { x, y, movX, movY, radio })
+            p = leerColumna(canal, p, columna, n);
+        p = leerColumna(canal, p, color, n);
+        leerColumna(canal, p, dormido, n);
+        dormidos = 0;
+        for (int i = 0; i < n; i++) {
+            if (dormido[i]) {
+                dormidos++;
+            } else {
+                listaDespiertos[i - dormidos] = i;
+                posicionDespierto[i] = i - dormidos;
+            }
+        }
+        System.arraycopy(x, 0, xAnterior, 0, n);
+        System.arraycopy(y, 0, yAnterior, 0, n);
+        tamanio = n;
+        vecesDormido++;
+    }
+
+    private static long escribirColumna(FileChannel canal, long p, double[] columna, int n) throws IOException {
+        for (int i = 0; i < n;) {
+            int k = Math.min(n - i, TAMANIO_TRAMO / Double.BYTES);
+            MappedByteBuffer tramo = proyectar(canal, FileChannel.MapMode.READ_WRITE, p, k * Double.BYTES);
+            try {
+                tramo.asDoubleBuffer().put(columna, i, k);
+            } finally {
+                liberar(tramo);
+            }
+            p += k * Double.BYTES;
+            i += k;
+        }
+        return p;
+    }
+
+    private static long escribirColumna(FileChannel canal, long p, int[] columna, int n) throws IOException {
+        for (int i = 0; i < n;) {
+            int k = Math.min(n - i, TAMANIO_TRAMO / Integer.BYTES);
+            MappedByteBuffer tramo = proyectar(canal, FileChannel.MapMode.READ_WRITE, p, k * Integer.BYTES);
+            try {
+                tramo.asIntBuffer().put(columna, i, k);
+            } finally {
+                liberar(tramo);
+            }
+            p += k * Integer.BYTES;
+            i += k;
+        }
+        return p;
+    }
+
+    private static long escribirColumna(FileChannel canal, long p, boolean[] columna, int n) throws IOException {
+        for (int i = 0; i < n;) {
+            int k = Math.min(n - i, TAMANIO_TRAMO);
+            MappedByteBuffer tramo = proyectar(canal, FileChannel.MapMode.READ_WRITE, p, k);
+            try {
+                for (int j = 0; j < k; j++)
+                    tramo.put(j, columna[i + j] ? (byte) 1 : (byte) 0);
+            } finally {
+                liberar(tramo);
+            }
+            p += k;
+            i += k;
+        }
+        return p;
+    }
+
+    private static long leerColumna(FileChannel canal, long p, double[] columna, int n) throws IOException {
+        for (int i = 0; i < n;) {
+            int k = Math.min(n - i, TAMANIO_TRAMO / Double.BYTES);
+            MappedByteBuffer tramo = proyectar(canal, FileChannel.MapMode.READ_ONLY, p, k * Double.BYTES);
+            try {
+                tramo.asDoubleBuffer().get(columna, i, k);
+            } finally {
+                liberar(tramo);
+            }
+            p += k * Double.BYTES;
+            i += k;
+        }
+        return p;
+    }
+
+    private static long leerColumna(FileChannel canal, long p, int[] columna, int n) throws IOException {
+        for (int i = 0; i < n;) {
+            int k = Math.min(n - i, TAMANIO_TRAMO / Integer.BYTES);
+            MappedByteBuffer tramo = proyectar(canal, FileChannel.MapMode.READ_ONLY, p, k * Integer.BYTES);
+            try {
+                tramo.asIntBuffer().get(columna, i, k);
+            } finally {
+                liberar(tramo);
+            }
+            p += k * Integer.BYTES;
+            i += k;
+        }
+        return p;
+    }
+
+    private static long leerColumna(FileChannel canal, long p, boolean[] columna, int n) throws IOException {
+        for (int i = 0; i < n;) {
+            int k = Math.min(n - i, TAMANIO_TRAMO);
+            MappedByteBuffer tramo = proyectar(canal, FileChannel.MapMode.READ_ONLY, p, k);
+            try {
+                for (int j = 0; j < k; j++)
+                    columna[i + j] = tramo.get(j) != 0;
+            } finally {
+                liberar(tramo);
+            }
+            p += k;
+            i += k;
+        }
+        return p;
+    }
+
+    private static MappedByteBuffer proyectar(FileChannel canal, FileChannel.MapMode modo, long posicion, int bytes)
+            throws IOException {
+        MappedByteBuffer tramo = canal.map(modo, posicion, bytes);
+        tramo.order(ByteOrder.LITTLE_ENDIAN);
+        return tramo;
+    }
+
+    // deshace la proyección en el momento, sin esperar a que el GC recoja el buffer, para
+    // que el fichero se pueda sobrescribir o borrar (en Windows no se puede mientras está
+    // proyectado) y no se acumule espacio de direcciones; el buffer no se debe usar después
+    private static void liberar(MappedByteBuffer tramo) {
+        if (LIBERAR == null)
+            return;
+        try {
+            LIBERAR.invoke(INSEGURO, tramo);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se ha podido liberar la proyección del fichero", e);
+        }
+    }
+
+    // sun.misc.Unsafe.invokeCleaner, del módulo jdk.unsupported; si no está, las
+    // proyecciones se liberan cuando el GC recoge sus buffers
+    private static Method buscarLiberar() {
+        try {
+            return INSEGURO == null ? null : INSEGURO.getClass().getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Object buscarInseguro() {
+        try {
+            Field campo = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+            campo.setAccessible(true);
+            return campo.get(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Guarda la posición actual de todos los círculos como posición anterior,
+     * que es la que usa {@link #dibujar(double)} para interpolar.
+     */
+    public void guardarPosiciones() {
+        System.arraycopy(x, 0, xAnterior, 0, tamanio);
+        System.arraycopy(y, 0, yAnterior, 0, tamanio);
+    }
+
+    /**
+     * Dibuja todos los círculos rellenos en el lienzo con una sola llamada a
+     * {@link StdDraw#filledCircles(double[], double[], double[], int[], int)}.
+     * El color del lápiz solo se cambia cuando difiere del círculo anterior.
+     */
+    public void dibujar() {
+        StdDraw.filledCircles(x, y, radio, color, tamanio);
+    }
+
+    /**
+     * Dibuja todos los círculos rellenos en una posición interpolada entre la
+     * posición anterior guardada y la actual.
+     *
+     * @param alfa La fracción del camino recorrido: 0 es la posición anterior y 1 la actual.
+     */
+    public void dibujar(double alfa) {
+        if (alfa == 1) {
+            dibujar();
+            return;
+        }
+        if (xDibujo == null || xDibujo.length < tamanio) {
+            xDibujo = new double[x.length];
+            yDibujo = new double[x.length];
+        }
+        for (int i = 0; i < tamanio; i++) {
+            xDibujo[i] = xAnterior[i] + (x[i] - xAnterior[i]) * alfa;
+            yDibujo[i] = yAnterior[i] + (y[i] - yAnterior[i]) * alfa;
+        }
+        StdDraw.filledCircles(xDibujo, yDibujo, radio, color, tamanio);
+    }
+}
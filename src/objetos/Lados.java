@@ -0,0 +1,72 @@
+package objetos;
+
+/**
+ * Esta clase reúne las constantes y utilidades de las máscaras de lados que
+ * devuelven {@link Circulo#lados(Rectangulo)} y {@link Rectangulo#lados(Rectangulo)}.
+ * <p>
+ * Cada lado tocado activa un bit, así que una esquina es simplemente la unión de
+ * sus dos lados ({@code DERECHA | ARRIBA}) y el rebote se decide con dos pruebas de
+ * bits, una por eje, en lugar de con un {@code switch} de nueve casos.
+ * <p>
+ * Los antiguos códigos de zona de 0 a 8 se siguen pudiendo obtener con
+ * {@link #zona(int)}.
+ */
+public final class Lados {
+
+    /** Ningún lado tocado. */
+    public static final int NINGUNO = 0;
+    /** Lado izquierdo. */
+    public static final int IZQUIERDA = 1;
+    /** Lado derecho. */
+    public static final int DERECHA = 2;
+    /** Lado superior. */
+    public static final int ARRIBA = 4;
+    /** Lado inferior. */
+    public static final int ABAJO = 8;
+    /** Los dos lados verticales, que invierten la velocidad en el eje x. */
+    public static final int HORIZONTAL = IZQUIERDA | DERECHA;
+    /** Los dos lados horizontales, que invierten la velocidad en el eje y. */
+    public static final int VERTICAL = ARRIBA | ABAJO;
+
+    // código de zona de cada máscara, con la misma prioridad que tenían las
+    // comprobaciones encadenadas de colision(): 8 > 7 > 6 > 5 > 4 > 3 > 2 > 1
+    private static final int[] ZONA = { 0, 2, 1, 2, 3, 6, 5, 6, 4, 7, 8, 8, 4, 7, 8, 8 };
+
+    private Lados() {
+    }
+
+    /**
+     * Convierte una máscara de lados en el código de zona de colisión antiguo.
+     *
+     * @param lados La máscara de lados tocados.
+     * @return El código de zona: 0 sin colisión, 1 derecha, 2 izquierda, 3 arriba,
+     *         4 abajo, 5 esquina superior derecha, 6 esquina superior izquierda,
+     *         7 esquina inferior izquierda y 8 esquina inferior derecha.
+     * @throws IllegalArgumentException Si la máscara tiene bits fuera de los cuatro lados.
+     */
+    public static int zona(int lados) {
+        if ((lados & ~(HORIZONTAL | VERTICAL)) != 0)
+            throw new IllegalArgumentException("Máscara de lados incorrecta: " + lados);
+        return ZONA[lados];
+    }
+
+    /**
+     * Obtiene el factor por el que se multiplica la velocidad en el eje x al rebotar.
+     *
+     * @param lados La máscara de lados tocados.
+     * @return -1 si se ha tocado el lado izquierdo o el derecho, 1 de lo contrario.
+     */
+    public static double factorX(int lados) {
+        return (lados & HORIZONTAL) != 0 ? -1.0 : 1.0;
+    }
+
+    /**
+     * Obtiene el factor por el que se multiplica la velocidad en el eje y al rebotar.
+     *
+     * @param lados La máscara de lados tocados.
+     * @return -1 si se ha tocado el lado superior o el inferior, 1 de lo contrario.
+     */
+    public static double factorY(int lados) {
+        return (lados & VERTICAL) != 0 ? -1.0 : 1.0;
+    }
+}
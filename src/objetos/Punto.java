@@ -1,6 +1,7 @@
 package objetos;
 
 import java.awt.Color;
+import utilidades.Paleta;
 import utilidades.StdDraw;
 
 /**
@@ -9,7 +10,7 @@ import utilidades.StdDraw;
 public class Punto {
     private double x;
     private double y;
-    private Color color;
+    private int color;
     private double movX;
     private double movY;
 
@@ -25,19 +26,37 @@ public class Punto {
     /**
      * Obtiene el color del punto.
      *
-     * @return El color del punto.
+     * @return El color del punto, compartido a través de {@link Paleta#color(int)}.
      */
     public Color getColor() {
-        return color;
+        return Paleta.color(color);
     }
 
     /**
      * Establece el color del punto.
      *
-     * @param color El color a establecer para el punto.
+     * @param color El color a establecer para el punto. Si es null, se usa el negro.
      */
     public void setColor(Color color) {
-        this.color = color;
+        this.color = Paleta.argb(color);
+    }
+
+    /**
+     * Obtiene el color del punto empaquetado en un entero.
+     *
+     * @return El color del punto en formato ARGB.
+     */
+    public int getColorArgb() {
+        return color;
+    }
+
+    /**
+     * Establece el color del punto a partir de un color empaquetado en un entero.
+     *
+     * @param argb El color en formato ARGB, con el canal alfa en los 8 bits altos.
+     */
+    public void setColorArgb(int argb) {
+        this.color = argb;
     }
 
     /**
@@ -122,17 +141,16 @@ public class Punto {
     public Punto(double x, double y) {
         this.x = x;
         this.y = y;
-        color = Color.BLACK;
+        color = Paleta.NEGRO;
     }
 
     /**
      * Dibuja el punto en el lienzo con el color y grosor predeterminados.
      */
     public void dibujar() {
-        if (color == null)
-            dibujar(Color.BLACK, 0.02);
-        else
-            dibujar(color, 0.02);
+        StdDraw.setPenColor(color);
+        StdDraw.setPenRadius(0.02);
+        StdDraw.point(x, y);
     }
 
     /**
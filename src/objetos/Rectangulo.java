@@ -135,7 +135,7 @@ public class Rectangulo {
      * @param grosor El grosor del rectángulo.
      */
     public void dibujar(double grosor) {
-        StdDraw.setPenColor(supIzq.getColor());
+        StdDraw.setPenColor(supIzq.getColorArgb());
         StdDraw.setPenRadius(grosor);
         StdDraw.rectangle(centro().getX(), centro().getY(), base() / 2, altura() / 2);
     }
@@ -153,7 +153,7 @@ public class Rectangulo {
      * @param relleno true para rellenar el rectángulo, false para dibujar solo el contorno.
      */
     public void dibujar(boolean relleno) {
-        StdDraw.setPenColor(supIzq.getColor());
+        StdDraw.setPenColor(supIzq.getColorArgb());
         if (relleno)
             StdDraw.filledRectangle(centro().getX(), centro().getY(), base() / 2, altura() / 2);
         else {
@@ -245,6 +245,15 @@ public class Rectangulo {
         supIzq.setColor(c);
     }
 
+    /**
+     * Establece el color del rectángulo a partir de un color empaquetado en un entero.
+     *
+     * @param argb El color en formato ARGB.
+     */
+    public void color(int argb) {
+        supIzq.setColorArgb(argb);
+    }
+
     /**
      * Establece las velocidades de movimiento para los vértices del rectángulo.
      *
@@ -266,8 +275,39 @@ public class Rectangulo {
         infDer.mover();
     }
 
+    /**
+     * Calcula qué lados de otro rectángulo toca o sobrepasa este rectángulo.
+     * Cada lado se comprueba una sola vez y se combina en la máscara sin saltos.
+     *
+     * @param otro El otro rectángulo con el que se verificará la colisión.
+     * @return La máscara de lados tocados, combinación de {@link Lados#IZQUIERDA},
+     *         {@link Lados#DERECHA}, {@link Lados#ARRIBA} y {@link Lados#ABAJO}.
+     */
+    public int lados(Rectangulo otro) {
+        return (supIzq.getX() <= otro.getSupIzq().getX() ? Lados.IZQUIERDA : 0)
+                | (infDer.getX() >= otro.getInfDer().getX() ? Lados.DERECHA : 0)
+                | (supIzq.getY() >= otro.getSupIzq().getY() ? Lados.ARRIBA : 0)
+                | (infDer.getY() <= otro.getInfDer().getY() ? Lados.ABAJO : 0);
+    }
+
+    /**
+     * Hace rebotar el rectángulo contra los lados de otro rectángulo: invierte la
+     * velocidad de sus vértices en el eje x si toca el lado izquierdo o el derecho,
+     * y en el eje y si toca el superior o el inferior.
+     *
+     * @param otro El rectángulo contra el que rebota este rectángulo.
+     * @return La máscara de lados tocados, como en {@link #lados(Rectangulo)}.
+     */
+    public int rebotar(Rectangulo otro) {
+        int lados = lados(otro);
+        movimiento(supIzq.getMovX() * Lados.factorX(lados), supIzq.getMovY() * Lados.factorY(lados));
+        return lados;
+    }
+
     /**
      * Verifica si este rectángulo colisiona con otro rectángulo dado.
+     * Se conserva por compatibilidad; {@link #lados(Rectangulo)} devuelve la misma
+     * información como máscara de bits.
      *
      * @param otro El otro rectángulo con el que se verificará la colisión.
      * @return Un valor entero que indica la zona de colisión:
@@ -282,25 +322,6 @@ public class Rectangulo {
      *         8 - Colisión en la esquina inferior derecha.
      */
     public int colision(Rectangulo otro) {
-        /* 0-No hay colision, 1-Derecha, 2-Izquierda, 3-Arriba, 4-Abajo,
-           5-esquina sup dcha, 6-esquina sup izq, 7-esquina inf  izq, 8-esquina inf der, */
-        int zonaColision = 0;
-        if (infDer.getX() >= otro.getInfDer().getX())
-            zonaColision = 1;
-        if (supIzq.getX() <= otro.getSupIzq().getX())
-            zonaColision = 2;
-        if (supIzq.getY() >= otro.getSupIzq().getY())
-            zonaColision = 3;
-        if (infDer.getY() <= otro.getInfDer().getY())
-            zonaColision = 4;
-        if (infDer.getX() >= otro.getInfDer().getX() && supIzq.getY() >= otro.getSupIzq().getY())
-            zonaColision = 5;
-        if (supIzq.getX() <= otro.getSupIzq().getX() && supIzq.getY() >= otro.getSupIzq().getY())
-            zonaColision = 6;
-        if (infDer.getY() <= otro.getInfDer().getY() && supIzq.getX() <= otro.getSupIzq().getX())
-            zonaColision = 7;
-        if (infDer.getY() <= otro.getInfDer().getY() && infDer.getX() >= otro.getInfDer().getX())
-            zonaColision = 8;
-        return zonaColision;
+        return Lados.zona(lados(otro));
     }
 }
@@ -0,0 +1,67 @@
+package simulacion;
+
+import java.util.concurrent.RecursiveAction;
+
+import objetos.CirculoBuffer;
+import objetos.Rectangulo;
+
+/**
+ * Esta clase representa la actualización en paralelo de un rango de círculos.
+ * <p>
+ * Divide el rango en mitades hasta que cada trozo tiene como mucho {@code umbral}
+ * círculos, y en cada trozo mueve los círculos y los hace rebotar contra la
+ * ventana, con detección discreta o continua. El rango puede ser de índices del
+ * buffer o de posiciones de una lista de índices (los círculos despiertos). Como
+ * cada círculo solo lee y escribe su propio estado, el resultado es idéntico bit
+ * a bit al de la actualización secuencial.
+ */
+class ActualizacionParalela extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final CirculoBuffer cuerpos;
+    private final Rectangulo ventana;
+    private final int[] indices;
+    private final int desde;
+    private final int hasta;
+    private final int umbral;
+    private final boolean continua;
+
+    /**
+     * Constructor que inicializa la tarea para un rango de círculos.
+     *
+     * @param cuerpos Los círculos a actualizar.
+     * @param ventana El rectángulo contra el que rebotan.
+     * @param indices Los índices de los círculos a actualizar, o null para todos.
+     * @param desde   La primera posición del rango (incluida).
+     * @param hasta   La última posición del rango (excluida).
+     * @param umbral  El número máximo de círculos que se actualizan sin dividir.
+     * @param continua true para usar la detección continua de colisiones con la ventana.
+     */
+    ActualizacionParalela(CirculoBuffer cuerpos, Rectangulo ventana, int[] indices, int desde, int hasta,
+                          int umbral, boolean continua) {
+        this.cuerpos = cuerpos;
+        this.ventana = ventana;
+        this.indices = indices;
+        this.desde = desde;
+        this.hasta = hasta;
+        this.umbral = umbral;
+        this.continua = continua;
+    }
+
+    @Override
+    protected void compute() {
+        if (hasta - desde > umbral) {
+            int medio = (desde + hasta) >>> 1;
+            invokeAll(new ActualizacionParalela(cuerpos, ventana, indices, desde, medio, umbral, continua),
+                      new ActualizacionParalela(cuerpos, ventana, indices, medio, hasta, umbral, continua));
+        } else if (indices == null && continua)
+            cuerpos.moverContinuo(ventana, desde, hasta);
+        else if (indices == null)
+            cuerpos.moverYRebotar(ventana, desde, hasta);
+        else if (continua)
+            cuerpos.moverContinuo(ventana, indices, desde, hasta);
+        else
+            cuerpos.moverYRebotar(ventana, indices, desde, hasta);
+    }
+}
@@ -0,0 +1,165 @@
+package simulacion;
+
+import java.util.Arrays;
+
+import objetos.CirculoBuffer;
+
+/**
+ * Esta clase representa una fase amplia de barrido y poda (sort and sweep).
+ * <p>
+ * Proyecta cada círculo sobre un eje como el intervalo [centro - radio, centro + radio]
+ * y mantiene los intervalos ordenados por su extremo inferior. Al barrer la lista
+ * ordenada, cada intervalo solo se compara con los siguientes hasta el primero que
+ * empieza después de que él termine; los pares que se solapan en el eje se podan
+ * además comprobando el solape en el otro eje.
+ * <p>
+ * El orden se conserva de un tick a otro. Como los círculos se mueven poco entre
+ * ticks, la lista está casi ordenada y se reordena por inserción en tiempo casi
+ * lineal. A diferencia de la rejilla, no depende de un tamaño de celda, así que
+ * funciona bien cuando los radios son muy distintos.
+ * <p>
+ * Solo se ordenan y barren los círculos despiertos. Los dormidos, que no se mueven,
+ * se guardan aparte en una rejilla que solo cambia cuando alguno se duerme o se
+ * despierta, y cada círculo despierto busca también entre ellos.
+ */
+public class BarridoYPoda implements FaseAmplia {
+
+    /**
+     * Eje sobre el que se ordenan y barren los intervalos.
+     */
+    public enum Eje {
+        /** Eje horizontal. */
+        X,
+        /** Eje vertical. */
+        Y
+    }
+
+    private final Eje eje;
+
+    private final RejillaDormidos dormidos = new RejillaDormidos();
+
+    // círculos despiertos ordenados por el extremo inferior de su intervalo
+    private int[] orden = new int[0];
+    private double[] inferior = new double[0];
+    private double[] superior = new double[0];
+    private int tamanio;
+    private boolean[] enOrden = new boolean[0];
+    private int vistos;
+
+    /**
+     * Constructor que inicializa un barrido sobre el eje x.
+     */
+    public BarridoYPoda() {
+        this(Eje.X);
+    }
+
+    /**
+     * Constructor que inicializa un barrido sobre el eje dado. Conviene barrer sobre
+     * el eje en el que los círculos están más repartidos.
+     *
+     * @param eje El eje sobre el que se ordenan los intervalos.
+     * @throws IllegalArgumentException Si el eje es nulo.
+     */
+    public BarridoYPoda(Eje eje) {
+        if (eje == null)
+            throw new IllegalArgumentException("El eje no puede ser null");
+        this.eje = eje;
+    }
+
+    /**
+     * Obtiene el eje del barrido.
+     *
+     * @return El eje sobre el que se ordenan los intervalos.
+     */
+    public Eje getEje() {
+        return eje;
+    }
+
+    @Override
+    public void buscarPares(CirculoBuffer cuerpos, double margen, ParesContacto candidatos) {
+        actualizarOrden(cuerpos, margen);
+        int n = tamanio;
+        boolean enX = eje == Eje.X;
+
+        for (int k = 0; k < n; k++) {
+            int i = orden[k];
+            double fin = superior[k];
+            double otroI = enX ? cuerpos.getY(i) : cuerpos.getX(i);
+            double radioI = cuerpos.getRadio(i) + 2 * margen;
+            for (int m = k + 1; m < n && inferior[m] <= fin; m++) {
+                int j = orden[m];
+                double otroJ = enX ? cuerpos.getY(j) : cuerpos.getX(j);
+                if (Math.abs(otroI - otroJ) <= radioI + cuerpos.getRadio(j)) {
+                    if (i < j)
+                        candidatos.agregar(i, j);
+                    else
+                        candidatos.agregar(j, i);
+                }
+            }
+        }
+        dormidos.buscarPares(cuerpos, margen, candidatos);
+    }
+
+    // quita del orden los círculos que se han dormido, añade los nuevos y los que se
+    // han despertado, recalcula los intervalos y corrige el orden por inserción
+    private void actualizarOrden(CirculoBuffer cuerpos, double margen) {
+        int total = cuerpos.tamanio();
+        if (total < vistos) {
+            // el buffer se ha vaciado: se empieza de nuevo
+            Arrays.fill(enOrden, 0, vistos, false);
+            tamanio = 0;
+        }
+        vistos = total;
+        if (orden.length < total) {
+            int capacidad = Math.max(total, orden.length + (orden.length >> 1));
+            orden = Arrays.copyOf(orden, capacidad);
+            inferior = new double[capacidad];
+            superior = new double[capacidad];
+            enOrden = Arrays.copyOf(enOrden, capacidad);
+        }
+        int n = 0;
+        for (int k = 0; k < tamanio; k++) {
+            int i = orden[k];
+            if (cuerpos.isDormido(i))
+                enOrden[i] = false;
+            else
+                orden[n++] = i;
+        }
+        // los círculos que faltan se añaden al final y la inserción los coloca
+        for (int k = 0; k < cuerpos.despiertos(); k++) {
+            int i = cuerpos.getDespierto(k);
+            if (!enOrden[i]) {
+                enOrden[i] = true;
+                orden[n++] = i;
+            }
+        }
+        tamanio = n;
+
+        boolean enX = eje == Eje.X;
+        for (int k = 0; k < n; k++) {
+            int i = orden[k];
+            double c = enX ? cuerpos.getX(i) : cuerpos.getY(i);
+            double r = cuerpos.getRadio(i) + margen;
+            inferior[k] = c - r;
+            superior[k] = c + r;
+        }
+
+        for (int k = 1; k < n; k++) {
+            double inf = inferior[k];
+            if (inferior[k - 1] <= inf)
+                continue;
+            int i = orden[k];
+            double sup = superior[k];
+            int m = k - 1;
+            while (m >= 0 && inferior[m] > inf) {
+                orden[m + 1] = orden[m];
+                inferior[m + 1] = inferior[m];
+                superior[m + 1] = superior[m];
+                m--;
+            }
+            orden[m + 1] = i;
+            inferior[m + 1] = inf;
+            superior[m + 1] = sup;
+        }
+    }
+}
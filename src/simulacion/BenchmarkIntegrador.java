@@ -0,0 +1,82 @@
+package simulacion;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import objetos.CirculoBuffer;
+import objetos.Rectangulo;
+
+/**
+ * Esta clase mide el rendimiento de los integradores de {@link CirculoBuffer}.
+ * <p>
+ * Compara el camino de dos pasadas ({@link CirculoBuffer#mover()} seguido de
+ * {@link CirculoBuffer#colision(Rectangulo)}) con el de una sola pasada sin saltos
+ * ({@link CirculoBuffer#moverYRebotar(Rectangulo)}) para varios tamaños de escena.
+ * El ancho de vector que usa el JIT se muestra en carriles de {@code double}; para
+ * comparar anchos distintos basta con ejecutarlo con {@code -XX:MaxVectorSize=8},
+ * {@code 16}, {@code 32} o {@code 64}.
+ */
+public class BenchmarkIntegrador {
+
+    private static final int[] TAMANIOS = { 1024, 16384, 262144, 1048576 };
+    private static final long CIRCULOS_POR_MEDIDA = 200000000L;
+    private static final int RONDAS = 5;
+
+    private BenchmarkIntegrador() { }
+
+    /**
+     * Ejecuta el benchmark y muestra los resultados por consola.
+     *
+     * @param args Argumentos de la línea de comandos (no utilizados)
+     */
+    public static void main(String[] args) {
+        System.out.println("Carriles double por vector: " + carriles());
+        System.out.println("círculos   2 pasadas (ns)   1 pasada (ns)   aceleración");
+        for (int n : TAMANIOS) {
+            CirculoBuffer cuerpos = crear(n);
+            Rectangulo ventana = new Rectangulo(-100, 100, 100, -100);
+            int repeticiones = (int) Math.max(1, CIRCULOS_POR_MEDIDA / n);
+            double dosPasadas = Double.MAX_VALUE;
+            double unaPasada = Double.MAX_VALUE;
+            // la primera ronda sirve de calentamiento para el JIT; se queda el mejor tiempo
+            for (int ronda = 0; ronda < RONDAS; ronda++) {
+                long t0 = System.nanoTime();
+                for (int k = 0; k < repeticiones; k++) {
+                    cuerpos.mover();
+                    cuerpos.colision(ventana);
+                }
+                long t1 = System.nanoTime();
+                for (int k = 0; k < repeticiones; k++)
+                    cuerpos.moverYRebotar(ventana);
+                long t2 = System.nanoTime();
+                if (ronda > 0) {
+                    dosPasadas = Math.min(dosPasadas, (double) (t1 - t0) / repeticiones / n);
+                    unaPasada = Math.min(unaPasada, (double) (t2 - t1) / repeticiones / n);
+                }
+            }
+            System.out.printf("%8d   %14.3f   %13.3f   %10.2fx%n", n, dosPasadas, unaPasada, dosPasadas / unaPasada);
+        }
+    }
+
+    // escena aleatoria repetible de n círculos dentro de la ventana
+    private static CirculoBuffer crear(int n) {
+        CirculoBuffer cuerpos = new CirculoBuffer(n);
+        Random r = new Random(n);
+        for (int i = 0; i < n; i++)
+            cuerpos.agregar(r.nextDouble(-90, 90), r.nextDouble(-90, 90), r.nextDouble(5, 10),
+                    r.nextDouble(-2, 2), r.nextDouble(-2, 2), 0xFF000000);
+        return cuerpos;
+    }
+
+    // número de doubles que caben en un vector según -XX:MaxVectorSize, o "?" si no es HotSpot
+    private static String carriles() {
+        try {
+            HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            return String.valueOf(Integer.parseInt(hotspot.getVMOption("MaxVectorSize").getValue()) / Double.BYTES);
+        } catch (RuntimeException e) {
+            return "?";
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package simulacion;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Esta clase representa un buffer triple para pasar datos de un hilo productor a
+ * un hilo consumidor sin que ninguno de los dos espere al otro.
+ * <p>
+ * Hay tres ranuras: la que está escribiendo el productor, la que está leyendo el
+ * consumidor y una intermedia con el último dato completo. Al publicar, el
+ * productor intercambia su ranura con la intermedia; al leer, el consumidor la
+ * intercambia con la suya si hay un dato nuevo. Los intercambios son una sola
+ * operación atómica, así que el productor nunca escribe en la ranura que se está
+ * leyendo y el consumidor siempre ve un dato completo (el más reciente). Si el
+ * productor publica más deprisa de lo que se lee, los datos intermedios se pierden.
+ * <p>
+ * Solo admite un productor y un consumidor.
+ *
+ * @param <T> El tipo de los datos, que se reutilizan de una publicación a otra.
+ */
+public class BufferTriple<T> {
+
+    // la ranura intermedia se guarda en los bits bajos; este bit indica que no se ha leído
+    private static final int NUEVO = 4;
+    private static final int RANURA = 3;
+
+    private final Object[] ranuras = new Object[3];
+    private final AtomicInteger intermedia = new AtomicInteger(1);
+    private int escritura = 0;
+    private int lectura = 2;
+
+    /**
+     * Constructor que inicializa el buffer creando sus tres ranuras.
+     *
+     * @param fabrica La función que crea cada ranura.
+     * @throws IllegalArgumentException Si la función es nula.
+     */
+    public BufferTriple(Supplier<T> fabrica) {
+        if (fabrica == null)
+            throw new IllegalArgumentException("El buffer triple necesita una función que cree las ranuras");
+        for (int i = 0; i < ranuras.length; i++)
+            ranuras[i] = fabrica.get();
+    }
+
+    /**
+     * Obtiene la ranura en la que escribe el productor. Solo la debe usar el hilo productor.
+     *
+     * @return La ranura de escritura.
+     */
+    @SuppressWarnings("unchecked")
+    public T escritura() {
+        return (T) ranuras[escritura];
+    }
+
+    /**
+     * Publica la ranura de escritura como último dato completo y pasa a escribir
+     * en otra. Solo la debe llamar el hilo productor.
+     */
+    public void publicar() {
+        escritura = intermedia.getAndSet(escritura | NUEVO) & RANURA;
+    }
+
+    /**
+     * Obtiene el último dato publicado. Solo la debe llamar el hilo consumidor, y el
+     * dato devuelto es válido hasta la siguiente llamada.
+     *
+     * @return El dato publicado más reciente, o la ranura inicial si aún no se ha publicado ninguno.
+     */
+    @SuppressWarnings("unchecked")
+    public T leer() {
+        if ((intermedia.get() & NUEVO) != 0)
+            lectura = intermedia.getAndSet(lectura) & RANURA;
+        return (T) ranuras[lectura];
+    }
+
+    /**
+     * Indica si hay un dato publicado que el consumidor aún no ha leído.
+     *
+     * @return true si hay un dato nuevo, false de lo contrario.
+     */
+    public boolean hayNuevo() {
+        return (intermedia.get() & NUEVO) != 0;
+    }
+}
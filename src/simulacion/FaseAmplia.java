@@ -0,0 +1,71 @@
+package simulacion;
+
+import objetos.CirculoBuffer;
+
+/**
+ * Esta interfaz representa la fase amplia de la detección de colisiones entre círculos.
+ * <p>
+ * Una fase amplia descarta de forma barata la mayoría de los pares que no pueden
+ * chocar y devuelve los candidatos restantes, que después se confirman con la
+ * prueba exacta de superposición. Las implementaciones son intercambiables en
+ * tiempo de ejecución con {@link Simulacion#setFaseAmplia(FaseAmplia)}, y
+ * {@link #crear(String)} permite elegirlas por nombre.
+ * <p>
+ * Los pares de dos círculos dormidos no se devuelven: están quietos y no pueden
+ * chocar hasta que algo despierte a uno de ellos.
+ */
+public interface FaseAmplia {
+
+    /**
+     * Busca los pares de círculos que pueden estar superpuestos.
+     * Cada par candidato se añade una sola vez, con el índice menor primero.
+     *
+     * @param cuerpos    Los círculos de la simulación.
+     * @param candidatos La lista en la que se añaden los pares candidatos.
+     */
+    default void buscarPares(CirculoBuffer cuerpos, ParesContacto candidatos) {
+        buscarPares(cuerpos, 0, candidatos);
+    }
+
+    /**
+     * Busca los pares de círculos que pueden llegar a superponerse si cada uno
+     * se desplaza como mucho una distancia dada. Es lo que necesita la detección
+     * continua, que busca choques a lo largo de todo el tick.
+     * Cada par candidato se añade una sola vez, con el índice menor primero.
+     *
+     * @param cuerpos    Los círculos de la simulación.
+     * @param margen     La distancia que se añade al radio de cada círculo.
+     * @param candidatos La lista en la que se añaden los pares candidatos.
+     */
+    void buscarPares(CirculoBuffer cuerpos, double margen, ParesContacto candidatos);
+
+    /**
+     * Crea una fase amplia a partir de su nombre.
+     * Los nombres válidos son {@code ninguna}, {@code rejilla} ({@link RejillaEspacial}),
+     * {@code barrido} ({@link BarridoYPoda} sobre el eje x), {@code barrido-y}
+     * ({@link BarridoYPoda} sobre el eje y) y {@code cuaternario}
+     * ({@link FaseArbolCuaternario}).
+     *
+     * @param nombre El nombre de la fase amplia.
+     * @return La fase amplia, o null para {@code ninguna}.
+     * @throws IllegalArgumentException Si el nombre no es válido.
+     */
+    static FaseAmplia crear(String nombre) {
+        if (nombre == null)
+            throw new IllegalArgumentException("El nombre de la fase amplia no puede ser null");
+        switch (nombre) {
+            case "ninguna":
+                return null;
+            case "rejilla":
+                return new RejillaEspacial();
+            case "barrido":
+                return new BarridoYPoda(BarridoYPoda.Eje.X);
+            case "barrido-y":
+                return new BarridoYPoda(BarridoYPoda.Eje.Y);
+            case "cuaternario":
+                return new FaseArbolCuaternario();
+            default:
+                throw new IllegalArgumentException("Fase amplia desconocida: " + nombre);
+        }
+    }
+}
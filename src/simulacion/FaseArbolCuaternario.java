@@ -0,0 +1,166 @@
+package simulacion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import objetos.ArbolCuaternario;
+import objetos.Circulo;
+import objetos.CirculoBuffer;
+import objetos.Punto;
+import objetos.Rectangulo;
+
+/**
+ * Esta clase representa una fase amplia basada en un {@link ArbolCuaternario}.
+ * <p>
+ * Cada círculo despierto tiene un {@link Circulo} en el árbol, con el radio
+ * ampliado por el margen de desplazamiento, que se recoloca en cada tick. Como los
+ * círculos se mueven poco entre ticks, la mayoría siguen en el mismo nodo y
+ * recolocarlos es barato. Los candidatos de cada círculo son los círculos del árbol
+ * cuya caja se solapa con la suya. A diferencia de la rejilla, no depende de un
+ * tamaño de celda, así que funciona bien cuando los radios son muy distintos.
+ * <p>
+ * Los círculos que se duermen salen del árbol y los que se despiertan vuelven a
+ * entrar. Los dormidos, que no se mueven, se guardan aparte en una rejilla que solo
+ * cambia cuando alguno se duerme o se despierta, y cada círculo despierto busca
+ * también entre ellos.
+ * <p>
+ * El árbol cubre la caja de los círculos despiertos y se vuelve a construir, el
+ * doble de grande, cuando algún círculo sale de ella.
+ */
+public class FaseArbolCuaternario implements FaseAmplia {
+
+    private ArbolCuaternario arbol;
+    private double minX, minY, maxX, maxY;
+    private final RejillaDormidos dormidos = new RejillaDormidos();
+
+    // Cuerpo de cada círculo de la simulación, que se crea la primera vez que está despierto
+    private Cuerpo[] circulos = new Cuerpo[0];
+    private boolean[] enArbol = new boolean[0];
+    private int vistos;
+
+    // índices de los círculos del árbol; desde nuevos, los que aún hay que insertar
+    private int[] lista = new int[0];
+    private int tamanio;
+    private int nuevos;
+    private final List<Object> vecinos = new ArrayList<Object>();
+
+    @Override
+    public void buscarPares(CirculoBuffer cuerpos, double margen, ParesContacto candidatos) {
+        actualizarLista(cuerpos);
+        if (tamanio > 0) {
+            boolean reconstruido = ajustarLimites(cuerpos);
+            colocar(cuerpos, margen, reconstruido);
+        }
+
+        // en el árbol solo hay despiertos: cada par se encuentra desde el de menor índice
+        for (int k = 0; k < tamanio; k++) {
+            int i = lista[k];
+            double x = cuerpos.getX(i);
+            double y = cuerpos.getY(i);
+            double r = cuerpos.getRadio(i) + margen;
+            vecinos.clear();
+            arbol.solapan(x - r, y - r, x + r, y + r, vecinos);
+            for (Object v : vecinos) {
+                int j = ((Cuerpo) v).indice;
+                if (j > i)
+                    candidatos.agregar(i, j);
+            }
+        }
+        dormidos.buscarPares(cuerpos, margen, candidatos);
+    }
+
+    // saca del árbol los círculos que se han dormido y apunta al final de la lista los
+    // nuevos y los que se han despertado, que colocar insertará
+    private void actualizarLista(CirculoBuffer cuerpos) {
+        int total = cuerpos.tamanio();
+        if (total < vistos) {
+            // el buffer se ha vaciado: se empieza de nuevo
+            Arrays.fill(enArbol, 0, vistos, false);
+            tamanio = 0;
+            arbol = null;
+        }
+        vistos = total;
+        if (circulos.length < total) {
+            int capacidad = Math.max(total, circulos.length + (circulos.length >> 1));
+            circulos = Arrays.copyOf(circulos, capacidad);
+            enArbol = Arrays.copyOf(enArbol, capacidad);
+            lista = Arrays.copyOf(lista, capacidad);
+        }
+        int n = 0;
+        for (int k = 0; k < tamanio; k++) {
+            int i = lista[k];
+            if (cuerpos.isDormido(i)) {
+                arbol.eliminar(circulos[i]);
+                enArbol[i] = false;
+            } else {
+                lista[n++] = i;
+            }
+        }
+        nuevos = n;
+        for (int k = 0; k < cuerpos.despiertos(); k++) {
+            int i = cuerpos.getDespierto(k);
+            if (!enArbol[i]) {
+                if (circulos[i] == null)
+                    circulos[i] = new Cuerpo(i);
+                enArbol[i] = true;
+                lista[n++] = i;
+            }
+        }
+        tamanio = n;
+    }
+
+    // construye de nuevo el árbol, vacío, si algún círculo ha salido de sus límites
+    private boolean ajustarLimites(CirculoBuffer cuerpos) {
+        double x0 = Double.POSITIVE_INFINITY, x1 = Double.NEGATIVE_INFINITY;
+        double y0 = Double.POSITIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < tamanio; k++) {
+            int i = lista[k];
+            x0 = Math.min(x0, cuerpos.getX(i));
+            x1 = Math.max(x1, cuerpos.getX(i));
+            y0 = Math.min(y0, cuerpos.getY(i));
+            y1 = Math.max(y1, cuerpos.getY(i));
+        }
+        if (arbol != null && x0 >= minX && x1 <= maxX && y0 >= minY && y1 <= maxY)
+            return false;
+
+        double mitad = Math.max(Math.max(x1 - x0, y1 - y0), 1);
+        double cx = (x0 + x1) / 2;
+        double cy = (y0 + y1) / 2;
+        minX = cx - mitad;
+        maxX = cx + mitad;
+        minY = cy - mitad;
+        maxY = cy + mitad;
+        arbol = new ArbolCuaternario(new Rectangulo(new Punto(minX, maxY), new Punto(maxX, minY)));
+        return true;
+    }
+
+    // recoloca en el árbol los círculos que ya estaban e inserta los demás
+    private void colocar(CirculoBuffer cuerpos, double margen, boolean reconstruido) {
+        for (int k = 0; k < tamanio; k++) {
+            Cuerpo c = circulos[lista[k]];
+            c.colocar(cuerpos, margen);
+            if (reconstruido || k >= nuevos)
+                arbol.insertar(c);
+            else
+                arbol.actualizar(c);
+        }
+    }
+
+    /**
+     * Círculo del árbol que recuerda el índice del círculo de la simulación.
+     */
+    private static class Cuerpo extends Circulo {
+        final int indice;
+
+        Cuerpo(int indice) {
+            this.indice = indice;
+        }
+
+        void colocar(CirculoBuffer cuerpos, double margen) {
+            getCentro().setX(cuerpos.getX(indice));
+            getCentro().setY(cuerpos.getY(indice));
+            setRadio(cuerpos.getRadio(indice) + margen);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package simulacion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Esta clase representa la grabación de las entradas de una sesión en un registro binario.
+ * <p>
+ * El registro empieza con la semilla del generador aleatorio y contiene, para cada
+ * entrada, el tick en el que se aplicó a la simulación: los clicks que crean
+ * círculos y los cambios de fase amplia. Como la simulación es determinista, con
+ * esto basta para que {@link ReproductorEntradas} repita la sesión exactamente, sin
+ * ventana y lo más rápido posible.
+ * <p>
+ * Las entradas se acumulan en un buffer y se escriben en bloque a través de un
+ * {@link FileChannel}. Solo se debe usar desde el hilo que hace avanzar la simulación.
+ */
+public class GrabadorEntradas implements AutoCloseable {
+
+    static final int MAGICO = 0x43435245;   // "CCRE"
+    static final short VERSION = 1;
+    static final byte FIN = 0;
+    static final byte CLICK = 1;
+    static final byte FASE = 2;
+
+    private static final int TAMANIO_BUFFER = 1 << 16;
+
+    private final FileChannel canal;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(TAMANIO_BUFFER);
+    private boolean cerrado;
+
+    /**
+     * Constructor que crea (o sustituye) el fichero de registro y escribe su cabecera.
+     *
+     * @param fichero El fichero en el que se graba la sesión.
+     * @param semilla La semilla del generador aleatorio con el que se crean los círculos.
+     * @throws IOException Si no se puede crear o escribir el fichero.
+     */
+    public GrabadorEntradas(Path fichero, long semilla) throws IOException {
+        canal = FileChannel.open(fichero, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(MAGICO).putShort(VERSION).putLong(semilla);
+    }
+
+    /**
+     * Graba un click que crea un círculo.
+     *
+     * @param tick El tick en el que se aplica el click.
+     * @param x    La coordenada x del click.
+     * @param y    La coordenada y del click.
+     * @throws IOException Si no se puede escribir el fichero.
+     */
+    public void click(long tick, double x, double y) throws IOException {
+        reservar(Long.BYTES + 1 + 2 * Double.BYTES);
+        buffer.putLong(tick).put(CLICK).putDouble(x).putDouble(y);
+    }
+
+    /**
+     * Graba un cambio de fase amplia.
+     *
+     * @param tick   El tick en el que se aplica el cambio.
+     * @param nombre El nombre de la fase amplia, como lo acepta {@link FaseAmplia#crear(String)}.
+     * @throws IOException Si no se puede escribir el fichero.
+     * @throws IllegalArgumentException Si el nombre es nulo o tiene más de 255 bytes.
+     */
+    public void fase(long tick, String nombre) throws IOException {
+        if (nombre == null)
+            throw new IllegalArgumentException("El nombre de la fase amplia no puede ser null");
+        byte[] bytes = nombre.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length > 255)
+            throw new IllegalArgumentException("Nombre de fase amplia demasiado largo: " + nombre);
+        reservar(Long.BYTES + 2 + bytes.length);
+        buffer.putLong(tick).put(FASE).put((byte) bytes.length).put(bytes);
+    }
+
+    /**
+     * Graba el final de la sesión y cierra el fichero. Las llamadas siguientes no hacen nada.
+     *
+     * @param tick El último tick simulado en la sesión.
+     * @throws IOException Si no se puede escribir el fichero.
+     */
+    public void cerrar(long tick) throws IOException {
+        if (cerrado)
+            return;
+        reservar(Long.BYTES + 1);
+        buffer.putLong(tick).put(FIN);
+        volcar();
+        cerrado = true;
+        canal.close();
+    }
+
+    /**
+     * Cierra el fichero sin grabar el final de la sesión; al reproducirlo se
+     * simula hasta la última entrada grabada.
+     *
+     * @throws IOException Si no se puede escribir el fichero.
+     */
+    @Override
+    public void close() throws IOException {
+        if (cerrado)
+            return;
+        volcar();
+        cerrado = true;
+        canal.close();
+    }
+
+    // deja sitio en el buffer para una entrada, escribiendo lo acumulado si no cabe
+    private void reservar(int bytes) throws IOException {
+        if (cerrado)
+            throw new IllegalStateException("El registro de entradas ya está cerrado");
+        if (buffer.remaining() < bytes)
+            volcar();
+    }
+
+    private void volcar() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            canal.write(buffer);
+        buffer.clear();
+    }
+}
@@ -0,0 +1,129 @@
+package simulacion;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Esta clase representa un hilo que hace avanzar una simulación a ritmo fijo y
+ * publica su estado para que otro hilo lo dibuje.
+ * <p>
+ * Tras cada tick copia los círculos en una {@link Instantanea} y la publica en un
+ * {@link BufferTriple}. El hilo de dibujo lee siempre la última instantánea
+ * completa, así que la física y el dibujo avanzan a la vez en máquinas con varios
+ * núcleos sin bloquearse nunca el uno al otro: si el dibujo es lento se salta
+ * instantáneas, y si la física es lenta se vuelve a dibujar la misma.
+ * <p>
+ * El ritmo lo marca un {@link RelojPasoFijo} que se despierta una vez por tick: los
+ * ticks pendientes que indica se simulan seguidos, y el tiempo sobrante
+ * ({@link RelojPasoFijo#alfa()}) se guarda en la instantánea para interpolar.
+ * <p>
+ * Desde que se inicia, la simulación solo se debe tocar desde este hilo. Los
+ * cambios que pide otro hilo (añadir círculos, cambiar la fase amplia...) se
+ * encolan con {@link #ejecutar(Consumer)} y se aplican al principio del siguiente tick.
+ */
+public class HiloSimulacion {
+
+    private final Simulacion sim;
+    private final double ticksPorSegundo;
+    private final long nanosPorTick;
+    private final BufferTriple<Instantanea> instantaneas = new BufferTriple<Instantanea>(Instantanea::new);
+    private final Queue<Consumer<Simulacion>> tareas = new ConcurrentLinkedQueue<Consumer<Simulacion>>();
+    private Thread hilo;
+
+    /**
+     * Constructor que inicializa el hilo para una simulación.
+     *
+     * @param sim             La simulación a hacer avanzar.
+     * @param ticksPorSegundo El número de ticks de simulación por segundo.
+     * @throws IllegalArgumentException Si la simulación es nula o la frecuencia no es positiva.
+     */
+    public HiloSimulacion(Simulacion sim, double ticksPorSegundo) {
+        if (sim == null)
+            throw new IllegalArgumentException("El hilo necesita una Simulacion");
+        if (ticksPorSegundo <= 0)
+            throw new IllegalArgumentException("Las frecuencias deben ser positivas");
+        this.sim = sim;
+        this.ticksPorSegundo = ticksPorSegundo;
+        this.nanosPorTick = Math.round(1e9 / ticksPorSegundo);
+        instantaneas.escritura().capturar(sim, System.nanoTime());
+        instantaneas.publicar();
+    }
+
+    /**
+     * Arranca el hilo de simulación.
+     *
+     * @throws IllegalStateException Si el hilo ya se ha arrancado.
+     */
+    public synchronized void iniciar() {
+        if (hilo != null)
+            throw new IllegalStateException("El hilo de simulación ya se ha iniciado");
+        hilo = new Thread(this::bucle, "simulacion");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Detiene el hilo de simulación y espera a que termine el tick en curso.
+     *
+     * @throws InterruptedException Si se interrumpe la espera.
+     */
+    public synchronized void detener() throws InterruptedException {
+        if (hilo == null)
+            return;
+        hilo.interrupt();
+        hilo.join();
+        hilo = null;
+    }
+
+    /**
+     * Encola un cambio sobre la simulación, que el hilo de simulación aplicará
+     * al principio del siguiente tick. Se puede llamar desde cualquier hilo.
+     *
+     * @param tarea El cambio a aplicar.
+     */
+    public void ejecutar(Consumer<Simulacion> tarea) {
+        tareas.add(tarea);
+    }
+
+    /**
+     * Obtiene la última instantánea publicada. Solo la debe llamar el hilo de dibujo,
+     * y la instantánea devuelta es válida hasta la siguiente llamada.
+     *
+     * @return La instantánea más reciente.
+     */
+    public Instantanea leer() {
+        return instantaneas.leer();
+    }
+
+    /**
+     * Calcula la fracción de tick transcurrida desde que se tomó una instantánea,
+     * para interpolar entre su posición anterior y la actual al dibujarla.
+     *
+     * @param instantanea La instantánea que se va a dibujar.
+     * @return Un valor entre 0 y 1.
+     */
+    public double alfa(Instantanea instantanea) {
+        double alfa = (double) (System.nanoTime() - instantanea.getNanos()) / nanosPorTick;
+        return Math.max(0, Math.min(1, alfa));
+    }
+
+    // bucle del hilo de simulación: tareas, ticks pendientes, publicación y espera al
+    // siguiente tick; si la física no da abasto, el reloj descarta el tiempo perdido
+    private void bucle() {
+        RelojPasoFijo reloj = new RelojPasoFijo(ticksPorSegundo, ticksPorSegundo);
+        while (!Thread.currentThread().isInterrupted()) {
+            int pendientes = reloj.ticksPendientes();
+            if (pendientes > 0) {
+                // instante real en que termina el último de los ticks pendientes
+                long nanos = System.nanoTime() - Math.round(reloj.alfa() * nanosPorTick);
+                for (Consumer<Simulacion> t = tareas.poll(); t != null; t = tareas.poll())
+                    t.accept(sim);
+                sim.avanzar(pendientes);
+                instantaneas.escritura().capturar(sim, nanos);
+                instantaneas.publicar();
+            }
+            reloj.esperarFrame();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package simulacion;
+
+import objetos.CirculoBuffer;
+
+/**
+ * Esta clase representa una instantánea del estado de una simulación al final de un tick.
+ * <p>
+ * Guarda una copia de los círculos (con la posición del tick anterior para
+ * interpolar), el número de tick y el instante en que se tomó. La escribe el hilo
+ * de simulación y, una vez publicada en un {@link BufferTriple}, solo la lee el
+ * hilo de dibujo, que no la modifica.
+ */
+public class Instantanea {
+
+    private final CirculoBuffer cuerpos = new CirculoBuffer();
+    private long tick;
+    private long nanos;
+
+    /**
+     * Copia el estado actual de una simulación.
+     *
+     * @param sim   La simulación a copiar.
+     * @param nanos El instante de la copia, según {@link System#nanoTime()}.
+     */
+    void capturar(Simulacion sim, long nanos) {
+        cuerpos.copiarDe(sim.getCuerpos());
+        this.tick = sim.getTicks();
+        this.nanos = nanos;
+    }
+
+    /**
+     * Obtiene los círculos de la instantánea. No se deben modificar.
+     *
+     * @return La copia de los círculos.
+     */
+    public CirculoBuffer getCuerpos() {
+        return cuerpos;
+    }
+
+    /**
+     * Obtiene el número de tick de la instantánea.
+     *
+     * @return El número de ticks simulados cuando se tomó.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Obtiene el instante en que se tomó la instantánea.
+     *
+     * @return El instante, según {@link System#nanoTime()}.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+}
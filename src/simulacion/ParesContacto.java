@@ -0,0 +1,95 @@
+package simulacion;
+
+import java.util.Arrays;
+
+/**
+ * Esta clase representa una lista de pares de círculos, identificados por su índice
+ * en un {@link objetos.CirculoBuffer}.
+ * <p>
+ * Los pares se guardan en dos arrays de enteros contiguos que se reutilizan de un
+ * tick a otro, así que buscar y resolver colisiones no crea un objeto por par.
+ */
+public class ParesContacto {
+
+    private static final int CAPACIDAD_INICIAL = 64;
+
+    private int[] a = new int[CAPACIDAD_INICIAL];
+    private int[] b = new int[CAPACIDAD_INICIAL];
+    private int tamanio;
+
+    /**
+     * Obtiene el número de pares de la lista.
+     *
+     * @return El número de pares.
+     */
+    public int tamanio() {
+        return tamanio;
+    }
+
+    /**
+     * Vacía la lista sin liberar su capacidad.
+     */
+    public void vaciar() {
+        tamanio = 0;
+    }
+
+    /**
+     * Añade un par a la lista.
+     *
+     * @param i El índice del primer círculo.
+     * @param j El índice del segundo círculo.
+     */
+    public void agregar(int i, int j) {
+        if (tamanio == a.length) {
+            a = Arrays.copyOf(a, a.length * 2);
+            b = Arrays.copyOf(b, b.length * 2);
+        }
+        a[tamanio] = i;
+        b[tamanio] = j;
+        tamanio++;
+    }
+
+    /**
+     * Obtiene el primer círculo de un par.
+     *
+     * @param k La posición del par en la lista.
+     * @return El índice del primer círculo.
+     */
+    public int getA(int k) {
+        return a[k];
+    }
+
+    /**
+     * Obtiene el segundo círculo de un par.
+     *
+     * @param k La posición del par en la lista.
+     * @return El índice del segundo círculo.
+     */
+    public int getB(int k) {
+        return b[k];
+    }
+
+    /**
+     * Sustituye el par de una posición de la lista.
+     *
+     * @param k La posición del par en la lista.
+     * @param i El índice del primer círculo.
+     * @param j El índice del segundo círculo.
+     */
+    public void set(int k, int i, int j) {
+        a[k] = i;
+        b[k] = j;
+    }
+
+    /**
+     * Recorta la lista a sus primeros pares.
+     *
+     * @param n El número de pares que se conservan.
+     * @throws IllegalArgumentException Si n es negativo o mayor que el número de pares.
+     */
+    public void recortar(int n) {
+        if (n < 0 || n > tamanio)
+            throw new IllegalArgumentException("Tamaño incorrecto para la lista de pares");
+        tamanio = n;
+    }
+}
@@ -0,0 +1,94 @@
+package simulacion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import objetos.CirculoBuffer;
+import objetos.Rectangulo;
+
+/**
+ * Esta clase guarda y restaura el estado completo de una simulación en un fichero.
+ * <p>
+ * El fichero empieza con una cabecera fija (número mágico, versión, tick, los
+ * vértices de la ventana y el número de círculos) seguida de los círculos por
+ * columnas, tal como los escribe {@link CirculoBuffer#guardar(FileChannel, long)}.
+ * Cada columna se copia de una vez a o desde una proyección en memoria de su
+ * región del fichero, así que restaurar millones de círculos cuesta poco más que
+ * leer el fichero. Cada proyección se libera en cuanto se ha copiado su columna,
+ * y el fichero se puede sobrescribir o borrar en cuanto termina la llamada.
+ * <p>
+ * Solo se guarda el estado: la fase amplia, el resolutor y el resto de la
+ * configuración de la simulación restaurada se deben establecer de nuevo.
+ */
+public final class PuntoDeControl {
+
+    private static final int MAGICO = 0x43435043;   // "CCPC"
+    private static final int VERSION = 1;
+    // mágico, versión, tick, cuatro coordenadas, número de círculos y relleno hasta 8 bytes
+    private static final int CABECERA = 2 * Integer.BYTES + Long.BYTES + 4 * Double.BYTES + 2 * Integer.BYTES;
+
+    private PuntoDeControl() {
+    }
+
+    /**
+     * Guarda el estado de una simulación en un fichero, sustituyéndolo si ya existe.
+     *
+     * @param sim     La simulación a guardar.
+     * @param fichero El fichero en el que se guarda.
+     * @throws IOException Si no se puede escribir el fichero.
+     */
+    public static void guardar(Simulacion sim, Path fichero) throws IOException {
+        CirculoBuffer cuerpos = sim.getCuerpos();
+        Rectangulo ventana = sim.getVentana();
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer cabecera = ByteBuffer.allocate(CABECERA).order(ByteOrder.LITTLE_ENDIAN);
+            cabecera.putInt(MAGICO).putInt(VERSION).putLong(sim.getTicks())
+                    .putDouble(ventana.getSupIzq().getX()).putDouble(ventana.getSupIzq().getY())
+                    .putDouble(ventana.getInfDer().getX()).putDouble(ventana.getInfDer().getY())
+                    .putInt(cuerpos.tamanio()).putInt(0);
+            cabecera.flip();
+            while (cabecera.hasRemaining())
+                canal.write(cabecera, cabecera.position());
+            cuerpos.guardar(canal, CABECERA);
+        }
+    }
+
+    /**
+     * Restaura una simulación guardada con {@link #guardar(Simulacion, Path)}.
+     *
+     * @param fichero El fichero con el estado guardado.
+     * @return Una simulación nueva con la ventana, el tick y los círculos guardados.
+     * @throws IOException Si no se puede leer el fichero.
+     * @throws IllegalArgumentException Si el fichero no es un punto de control válido.
+     */
+    public static Simulacion cargar(Path fichero) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+            if (canal.size() < CABECERA)
+                throw new IllegalArgumentException("El fichero no es un punto de control: " + fichero);
+            ByteBuffer cabecera = ByteBuffer.allocate(CABECERA).order(ByteOrder.LITTLE_ENDIAN);
+            while (cabecera.hasRemaining())
+                if (canal.read(cabecera, cabecera.position()) < 0)
+                    throw new IllegalArgumentException("El fichero no es un punto de control: " + fichero);
+            cabecera.flip();
+            if (cabecera.getInt() != MAGICO)
+                throw new IllegalArgumentException("El fichero no es un punto de control: " + fichero);
+            int version = cabecera.getInt();
+            if (version != VERSION)
+                throw new IllegalArgumentException("Versión de punto de control no soportada: " + version);
+            long ticks = cabecera.getLong();
+            Rectangulo ventana = new Rectangulo(cabecera.getDouble(), cabecera.getDouble(),
+                    cabecera.getDouble(), cabecera.getDouble());
+            int n = cabecera.getInt();
+
+            Simulacion sim = new Simulacion(ventana);
+            sim.setTicks(ticks);
+            sim.getCuerpos().cargar(canal, CABECERA, n);
+            return sim;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package simulacion;
+
+import java.util.Arrays;
+
+import objetos.CirculoBuffer;
+
+/**
+ * Esta clase guarda los círculos dormidos para las fases amplias, que así solo
+ * tienen que repartir, ordenar o recolocar los despiertos en cada tick.
+ * <p>
+ * Los círculos dormidos no se mueven, así que se guardan en una rejilla con hash
+ * espacial que se conserva de un tick a otro: en cada tick solo se añaden los que
+ * se han dormido desde el anterior (que estaban entre los despiertos entonces) y
+ * se quitan los que se han despertado (que están entre los despiertos ahora). Si
+ * {@link CirculoBuffer#getVecesDormido()} dice que se ha dormido algún otro, o el
+ * buffer se ha vaciado, la rejilla se vuelve a llenar entera. Cada círculo
+ * despierto busca después los dormidos cuya caja toca la suya.
+ */
+class RejillaDormidos {
+
+    private double celda;
+    private double maxRadio;
+    private int tamanio;
+    private long vecesDormido = -1;
+    private int enRejilla;
+
+    // círculos despiertos en el tick anterior
+    private int[] anteriores = new int[0];
+    private int numAnteriores;
+
+    private boolean[] guardado = new boolean[0];
+    private int[] celdaX = new int[0];
+    private int[] celdaY = new int[0];
+    private int[] cubeta = new int[0];
+    private int[] siguiente = new int[0];
+    private int[] anterior = new int[0];
+    private int[] cabeza = new int[0];
+    private int mascara;
+
+    /**
+     * Añade los pares formados por un círculo despierto y uno dormido que pueden
+     * llegar a superponerse si el despierto se desplaza como mucho una distancia
+     * dada. Cada par se añade una sola vez, con el índice menor primero.
+     *
+     * @param cuerpos    Los círculos de la simulación.
+     * @param margen     La distancia que se añade al radio de cada círculo.
+     * @param candidatos La lista en la que se añaden los pares candidatos.
+     */
+    void buscarPares(CirculoBuffer cuerpos, double margen, ParesContacto candidatos) {
+        actualizar(cuerpos);
+        if (enRejilla == 0)
+            return;
+        // si se han dormido círculos mucho más grandes que la celda, se elige otra
+        if (maxRadio > celda)
+            reconstruir(cuerpos);
+        for (int k = 0; k < cuerpos.despiertos(); k++) {
+            int i = cuerpos.getDespierto(k);
+            double x = cuerpos.getX(i);
+            double y = cuerpos.getY(i);
+            double radio = cuerpos.getRadio(i) + 2 * margen;
+            double alcance = radio + maxRadio;
+            int x0 = (int) Math.floor((x - alcance) / celda), x1 = (int) Math.floor((x + alcance) / celda);
+            int y0 = (int) Math.floor((y - alcance) / celda), y1 = (int) Math.floor((y + alcance) / celda);
+            for (int cx = x0; cx <= x1; cx++) {
+                for (int cy = y0; cy <= y1; cy++) {
+                    for (int j = cabeza[hash(cx, cy)]; j >= 0; j = siguiente[j]) {
+                        // distintas celdas pueden compartir cubeta: se comprueba la celda real
+                        if (celdaX[j] != cx || celdaY[j] != cy)
+                            continue;
+                        double r = radio + cuerpos.getRadio(j);
+                        if (Math.abs(x - cuerpos.getX(j)) <= r && Math.abs(y - cuerpos.getY(j)) <= r)
+                            candidatos.agregar(Math.min(i, j), Math.max(i, j));
+                    }
+                }
+            }
+        }
+    }
+
+    // pone la rejilla al día con los círculos que se han dormido o despertado
+    private void actualizar(CirculoBuffer cuerpos) {
+        int n = cuerpos.tamanio();
+        if (guardado.length < n || n < tamanio) {
+            reconstruir(cuerpos);
+        } else {
+            // los que se han dormido desde el tick anterior estaban despiertos entonces o son nuevos
+            long esperadas = vecesDormido;
+            for (int k = 0; k < numAnteriores; k++) {
+                int i = anteriores[k];
+                if (cuerpos.isDormido(i) && !guardado[i]) {
+                    insertar(cuerpos, i);
+                    esperadas++;
+                }
+            }
+            for (int i = tamanio; i < n; i++) {
+                if (cuerpos.isDormido(i) && !guardado[i]) {
+                    insertar(cuerpos, i);
+                    esperadas++;
+                }
+            }
+            tamanio = n;
+            if (esperadas != cuerpos.getVecesDormido()) {
+                reconstruir(cuerpos);
+            } else {
+                for (int k = 0; k < cuerpos.despiertos(); k++) {
+                    int i = cuerpos.getDespierto(k);
+                    if (guardado[i])
+                        quitar(i);
+                }
+            }
+        }
+        vecesDormido = cuerpos.getVecesDormido();
+        numAnteriores = cuerpos.despiertos();
+        if (anteriores.length < numAnteriores)
+            anteriores = new int[guardado.length];
+        cuerpos.copiarDespiertos(anteriores);
+    }
+
+    // vuelve a llenar la rejilla con todos los círculos dormidos
+    private void reconstruir(CirculoBuffer cuerpos) {
+        int n = cuerpos.tamanio();
+        if (guardado.length < n) {
+            int capacidad = Math.max(n, guardado.length + (guardado.length >> 1));
+            guardado = new boolean[capacidad];
+            celdaX = new int[capacidad];
+            celdaY = new int[capacidad];
+            cubeta = new int[capacidad];
+            siguiente = new int[capacidad];
+            anterior = new int[capacidad];
+            cabeza = new int[Integer.highestOneBit(Math.max(1, 2 * capacidad - 1)) << 1];
+            mascara = cabeza.length - 1;
+        } else {
+            Arrays.fill(guardado, false);
+        }
+        Arrays.fill(cabeza, -1);
+        enRejilla = 0;
+        maxRadio = 0;
+        celda = 0;
+        for (int i = 0; i < n; i++)
+            if (cuerpos.isDormido(i))
+                maxRadio = Math.max(maxRadio, cuerpos.getRadio(i));
+        for (int i = 0; i < n; i++)
+            if (cuerpos.isDormido(i))
+                insertar(cuerpos, i);
+        tamanio = n;
+    }
+
+    // pone el círculo i al principio de la lista de la cubeta de su celda
+    private void insertar(CirculoBuffer cuerpos, int i) {
+        maxRadio = Math.max(maxRadio, cuerpos.getRadio(i));
+        if (celda == 0)
+            celda = 2 * maxRadio;   // la celda no cambia hasta que se reconstruye la rejilla
+        int cx = (int) Math.floor(cuerpos.getX(i) / celda);
+        int cy = (int) Math.floor(cuerpos.getY(i) / celda);
+        int h = hash(cx, cy);
+        celdaX[i] = cx;
+        celdaY[i] = cy;
+        cubeta[i] = h;
+        anterior[i] = -1;
+        siguiente[i] = cabeza[h];
+        if (cabeza[h] >= 0)
+            anterior[cabeza[h]] = i;
+        cabeza[h] = i;
+        guardado[i] = true;
+        enRejilla++;
+    }
+
+    // saca el círculo i de la lista de su cubeta
+    private void quitar(int i) {
+        int a = anterior[i];
+        int s = siguiente[i];
+        if (a >= 0)
+            siguiente[a] = s;
+        else
+            cabeza[cubeta[i]] = s;
+        if (s >= 0)
+            anterior[s] = a;
+        guardado[i] = false;
+        enRejilla--;
+    }
+
+    private int hash(int cx, int cy) {
+        return (cx * 73856093 ^ cy * 19349663) & mascara;
+    }
+}
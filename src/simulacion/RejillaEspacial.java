@@ -0,0 +1,138 @@
+package simulacion;
+
+import java.util.Arrays;
+
+import objetos.CirculoBuffer;
+
+/**
+ * Esta clase representa una fase amplia basada en una rejilla uniforme con hash espacial.
+ * <p>
+ * El plano se divide en celdas cuadradas del tamaño del diámetro del mayor círculo
+ * (más el margen de desplazamiento, si lo hay), de modo que dos círculos superpuestos
+ * siempre están en la misma celda o en celdas vecinas. Cada celda se asigna a una
+ * cubeta de una tabla hash y, en cada tick, los círculos se reparten en las cubetas
+ * con una ordenación por conteo sobre arrays que se reutilizan. Los candidatos de
+ * cada círculo son los de su celda y las ocho vecinas.
+ * <p>
+ * Solo se reparten los círculos despiertos. Los dormidos, que no se mueven, se
+ * guardan aparte en una rejilla que solo cambia cuando alguno se duerme o se
+ * despierta, y cada círculo despierto busca también entre ellos.
+ * <p>
+ * La rejilla se reconstruye entera en cada tick en lugar de cambiar de cubeta solo
+ * los círculos que cambian de celda. La ordenación por conteo deja los círculos de
+ * cada cubeta seguidos en memoria, y la consulta, que es lo que más cuesta, los
+ * recorre así sin saltos. Con listas enlazadas que se actualizan de forma
+ * incremental, la consulta salta por memoria y el tick resulta más lento. Los arrays
+ * y la tabla hash se reservan para toda su capacidad y solo se crean de nuevo cuando
+ * esta crece.
+ */
+public class RejillaEspacial implements FaseAmplia {
+
+    private final double tamanioCelda;
+    private final RejillaDormidos dormidos = new RejillaDormidos();
+
+    private int[] celdaX = new int[0];
+    private int[] celdaY = new int[0];
+    private int[] cubeta = new int[0];
+    private int[] orden = new int[0];
+    private int[] inicio = new int[1];
+    private int mascara;
+
+    /**
+     * Constructor que inicializa una rejilla cuyo tamaño de celda se ajusta en cada
+     * tick al diámetro del mayor círculo.
+     */
+    public RejillaEspacial() {
+        this.tamanioCelda = 0;
+    }
+
+    /**
+     * Constructor que inicializa una rejilla con un tamaño de celda mínimo.
+     * Si algún círculo es más grande, la celda crece hasta su diámetro.
+     *
+     * @param tamanioCelda El lado mínimo de cada celda.
+     * @throws IllegalArgumentException Si el tamaño de celda no es positivo.
+     */
+    public RejillaEspacial(double tamanioCelda) {
+        if (tamanioCelda <= 0)
+            throw new IllegalArgumentException("El tamaño de celda debe ser positivo");
+        this.tamanioCelda = tamanioCelda;
+    }
+
+    @Override
+    public void buscarPares(CirculoBuffer cuerpos, double margen, ParesContacto candidatos) {
+        // solo se reparten los círculos despiertos, por su posición k en la lista de despiertos
+        int n = cuerpos.despiertos();
+        preparar(n);
+
+        double maxRadio = 0;
+        for (int k = 0; k < n; k++)
+            maxRadio = Math.max(maxRadio, cuerpos.getRadio(cuerpos.getDespierto(k)));
+        double celda = Math.max(tamanioCelda, 2 * (maxRadio + margen));
+
+        // reparto de los círculos en las cubetas (ordenación por conteo)
+        Arrays.fill(inicio, 0, mascara + 2, 0);
+        for (int k = 0; k < n; k++) {
+            int i = cuerpos.getDespierto(k);
+            int cx = (int) Math.floor(cuerpos.getX(i) / celda);
+            int cy = (int) Math.floor(cuerpos.getY(i) / celda);
+            celdaX[k] = cx;
+            celdaY[k] = cy;
+            cubeta[k] = hash(cx, cy);
+            inicio[cubeta[k] + 1]++;
+        }
+        for (int h = 0; h < mascara + 1; h++)
+            inicio[h + 1] += inicio[h];
+        for (int k = 0; k < n; k++)
+            orden[inicio[cubeta[k]]++] = k;
+        // el bucle anterior ha desplazado cada inicio al final de su cubeta
+        System.arraycopy(inicio, 0, inicio, 1, mascara + 1);
+        inicio[0] = 0;
+
+        // cada par de despiertos se encuentra una sola vez, desde el de menor posición
+        for (int k = 0; k < n; k++) {
+            int i = cuerpos.getDespierto(k);
+            int cx = celdaX[k];
+            int cy = celdaY[k];
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    int vx = cx + dx;
+                    int vy = cy + dy;
+                    int h = hash(vx, vy);
+                    for (int e = inicio[h], fin = inicio[h + 1]; e < fin; e++) {
+                        int l = orden[e];
+                        // distintas celdas pueden compartir cubeta: se comprueba la celda real
+                        if (l <= k || celdaX[l] != vx || celdaY[l] != vy)
+                            continue;
+                        int j = cuerpos.getDespierto(l);
+                        candidatos.agregar(Math.min(i, j), Math.max(i, j));
+                    }
+                }
+            }
+        }
+        dormidos.buscarPares(cuerpos, margen, candidatos);
+    }
+
+    // ajusta los arrays a n círculos y usa las primeras cubetas (la potencia de dos >= 2n)
+    // de una tabla reservada para toda la capacidad, que solo se crea de nuevo al crecer esta
+    private void preparar(int n) {
+        if (celdaX.length < n) {
+            int capacidad = Math.max(n, celdaX.length + (celdaX.length >> 1));
+            celdaX = new int[capacidad];
+            celdaY = new int[capacidad];
+            cubeta = new int[capacidad];
+            orden = new int[capacidad];
+            inicio = new int[cubetas(capacidad) + 1];
+        }
+        mascara = cubetas(n) - 1;
+    }
+
+    // potencia de dos >= 2n
+    private static int cubetas(int n) {
+        return Integer.highestOneBit(Math.max(1, 2 * n - 1)) << 1;
+    }
+
+    private int hash(int cx, int cy) {
+        return (cx * 73856093 ^ cy * 19349663) & mascara;
+    }
+}
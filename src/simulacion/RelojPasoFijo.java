@@ -0,0 +1,103 @@
+package simulacion;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Esta clase representa un reloj de simulación con paso de tiempo fijo.
+ * <p>
+ * Separa la velocidad de la simulación de la del dibujo: en cada frame acumula
+ * el tiempo real transcurrido y dice cuántos ticks de duración fija hay que
+ * simular para ponerse al día. El tiempo sobrante (menos de un tick) se expresa
+ * con {@link #alfa()} para interpolar las posiciones al dibujar. El ritmo de
+ * frames se mantiene con {@link LockSupport#parkNanos(long)} en lugar de
+ * dormir un tiempo fijo.
+ */
+public class RelojPasoFijo {
+
+    private static final int MAX_TICKS_POR_FRAME = 8;
+
+    private final long nanosPorTick;
+    private final long nanosPorFrame;
+    private final int maxTicksPorFrame;
+
+    private boolean iniciado;
+    private long ultimo;
+    private long acumulado;
+    private long siguienteFrame;
+
+    /**
+     * Constructor que inicializa un reloj con una frecuencia de simulación y de dibujo.
+     *
+     * @param ticksPorSegundo  El número de ticks de simulación por segundo.
+     * @param framesPorSegundo El número de frames dibujados por segundo.
+     */
+    public RelojPasoFijo(double ticksPorSegundo, double framesPorSegundo) {
+        this(ticksPorSegundo, framesPorSegundo, MAX_TICKS_POR_FRAME);
+    }
+
+    /**
+     * Constructor que inicializa un reloj limitando los ticks que se simulan por frame.
+     * Si la simulación se retrasa más de ese límite, el tiempo perdido se descarta
+     * en lugar de intentar recuperarlo (y retrasarse aún más).
+     *
+     * @param ticksPorSegundo  El número de ticks de simulación por segundo.
+     * @param framesPorSegundo El número de frames dibujados por segundo.
+     * @param maxTicksPorFrame El máximo de ticks simulados en un frame.
+     * @throws IllegalArgumentException Si alguno de los valores no es positivo.
+     */
+    public RelojPasoFijo(double ticksPorSegundo, double framesPorSegundo, int maxTicksPorFrame) {
+        if (ticksPorSegundo <= 0 || framesPorSegundo <= 0)
+            throw new IllegalArgumentException("Las frecuencias deben ser positivas");
+        if (maxTicksPorFrame <= 0)
+            throw new IllegalArgumentException("El máximo de ticks por frame debe ser positivo");
+        this.nanosPorTick = Math.round(1e9 / ticksPorSegundo);
+        this.nanosPorFrame = Math.round(1e9 / framesPorSegundo);
+        this.maxTicksPorFrame = maxTicksPorFrame;
+    }
+
+    /**
+     * Calcula cuántos ticks hay que simular en este frame según el tiempo transcurrido.
+     *
+     * @return El número de ticks pendientes (entre 0 y el máximo por frame).
+     */
+    public int ticksPendientes() {
+        long ahora = System.nanoTime();
+        if (!iniciado) {
+            iniciado = true;
+            ultimo = ahora;
+            siguienteFrame = ahora;
+        }
+        acumulado += ahora - ultimo;
+        ultimo = ahora;
+
+        long pendientes = acumulado / nanosPorTick;
+        acumulado -= pendientes * nanosPorTick;
+        if (pendientes > maxTicksPorFrame)
+            pendientes = maxTicksPorFrame;
+        return (int) pendientes;
+    }
+
+    /**
+     * Obtiene la fracción de tick acumulada que aún no se ha simulado.
+     *
+     * @return Un valor entre 0 (inclusive) y 1 (exclusive) para interpolar posiciones.
+     */
+    public double alfa() {
+        return (double) acumulado / nanosPorTick;
+    }
+
+    /**
+     * Espera hasta el inicio del siguiente frame.
+     * Si el frame actual ya se ha pasado de su tiempo, no espera y se resincroniza.
+     */
+    public void esperarFrame() {
+        siguienteFrame += nanosPorFrame;
+        long espera = siguienteFrame - System.nanoTime();
+        if (espera < -nanosPorFrame)
+            siguienteFrame = System.nanoTime();
+        while (espera > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(espera);
+            espera = siguienteFrame - System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package simulacion;
+
+import java.util.Arrays;
+
+import objetos.CirculoBuffer;
+
+/**
+ * Esta clase representa el seguimiento del reposo de los círculos de una simulación.
+ * <p>
+ * Un círculo está en calma mientras su velocidad y su energía cinética están por
+ * debajo de sus umbrales. Los círculos que se tocan forman una isla, que se
+ * calcula en cada tick con una unión por conjuntos sobre los contactos: una isla
+ * se duerme entera cuando todos sus círculos llevan un número de ticks en calma,
+ * y se despierta entera en cuanto uno de ellos deja de estarlo. Así un círculo que
+ * choca contra un montón dormido lo despierta, pero un montón quieto no se mueve
+ * solo porque uno de sus círculos esté aún frenando.
+ * <p>
+ * Las islas dormidas se conservan de un tick a otro como listas circulares de sus
+ * círculos, y en cada tick solo se recorren los círculos despiertos, los de los
+ * contactos y las islas dormidas que alguno de ellos toca. Un círculo dormido que
+ * nadie toca no cuesta nada: tiene velocidad cero, la integración lo salta y la
+ * fase amplia no busca pares entre dos círculos dormidos. Si algún círculo se ha
+ * dormido desde fuera, o se ha sustituido el contenido del buffer, se recorren
+ * todos una vez y las islas se forman de nuevo.
+ */
+public class Reposo {
+
+    private static final double VELOCIDAD = 0.05;
+    private static final double ENERGIA = 0.1;
+    private static final int TICKS_PARA_DORMIR = 60;
+
+    private final double velocidad;
+    private final double energia;
+    private final int ticksParaDormir;
+
+    private int[] calma = new int[0];
+    private int[] padre = new int[0];
+    private int[] calmaIsla = new int[0];
+    // isla dormida de cada círculo (su primer círculo), o -1, y el siguiente círculo de la isla
+    private int[] isla = new int[0];
+    private int[] siguiente = new int[0];
+    // círculos que se recorren en este tick, marcados con el sello del tick
+    private int[] visitados = new int[0];
+    private int[] marca = new int[0];
+    private int sello;
+    private int tamanio;
+    private long vecesDormido = -1;
+
+    /**
+     * Constructor que inicializa el seguimiento con los umbrales por defecto.
+     */
+    public Reposo() {
+        this(VELOCIDAD, ENERGIA, TICKS_PARA_DORMIR);
+    }
+
+    /**
+     * Constructor que inicializa el seguimiento con umbrales dados.
+     *
+     * @param velocidad       La velocidad por debajo de la cual un círculo está en calma.
+     * @param energia         La energía cinética (con masa igual al cuadrado del radio)
+     *                        por debajo de la cual un círculo está en calma.
+     * @param ticksParaDormir Los ticks seguidos en calma que necesita una isla para dormirse.
+     * @throws IllegalArgumentException Si algún umbral es negativo o el número de ticks no es positivo.
+     */
+    public Reposo(double velocidad, double energia, int ticksParaDormir) {
+        if (velocidad < 0 || energia < 0)
+            throw new IllegalArgumentException("Los umbrales de reposo no pueden ser negativos");
+        if (ticksParaDormir <= 0)
+            throw new IllegalArgumentException("El número de ticks para dormir debe ser positivo");
+        this.velocidad = velocidad;
+        this.energia = energia;
+        this.ticksParaDormir = ticksParaDormir;
+    }
+
+    /**
+     * Actualiza la calma de cada círculo y duerme o despierta cada isla.
+     *
+     * @param cuerpos   Los círculos de la simulación.
+     * @param contactos Los pares de círculos en contacto en este tick.
+     */
+    public void actualizar(CirculoBuffer cuerpos, ParesContacto contactos) {
+        preparar(cuerpos.tamanio());
+        if (++sello == 0) {
+            Arrays.fill(marca, 0);
+            sello = 1;
+        }
+
+        // los círculos despiertos y los de los contactos, con sus islas dormidas enteras
+        int m = 0;
+        if (cuerpos.getVecesDormido() != vecesDormido) {
+            Arrays.fill(isla, 0, tamanio, -1);
+            for (int i = 0; i < tamanio; i++)
+                m = visitar(cuerpos, i, m);
+        } else {
+            for (int k = 0; k < cuerpos.despiertos(); k++)
+                m = visitar(cuerpos, cuerpos.getDespierto(k), m);
+        }
+        for (int k = 0; k < contactos.tamanio(); k++) {
+            m = visitar(cuerpos, contactos.getA(k), m);
+            m = visitar(cuerpos, contactos.getB(k), m);
+        }
+
+        for (int k = 0; k < contactos.tamanio(); k++) {
+            int a = raiz(contactos.getA(k));
+            int b = raiz(contactos.getB(k));
+            if (a != b)
+                padre[a] = b;
+        }
+
+        // la isla tiene la calma de su círculo menos calmado
+        for (int k = 0; k < m; k++) {
+            int i = visitados[k];
+            int r = raiz(i);
+            calmaIsla[r] = Math.min(calmaIsla[r], calma[i]);
+        }
+        // las islas que se duermen se guardan como una lista circular que empieza en su raíz
+        for (int k = 0; k < m; k++) {
+            int i = visitados[k];
+            int r = raiz(i);
+            if (calmaIsla[r] < ticksParaDormir) {
+                isla[i] = -1;
+                cuerpos.despertar(i);
+            } else {
+                if (i != r) {
+                    siguiente[i] = siguiente[r];
+                    siguiente[r] = i;
+                }
+                isla[i] = r;
+                cuerpos.dormir(i);
+            }
+        }
+        vecesDormido = cuerpos.getVecesDormido();
+    }
+
+    // añade i a los círculos de este tick, o toda su isla si está en una isla dormida
+    private int visitar(CirculoBuffer cuerpos, int i, int m) {
+        if (marca[i] == sello)
+            return m;
+        int r = isla[i];
+        if (r < 0)
+            return agregar(cuerpos, i, i, m);
+        int j = r;
+        do {
+            m = agregar(cuerpos, j, r, m);
+            j = siguiente[j];
+        } while (j != r);
+        return m;
+    }
+
+    // actualiza la calma de i y lo añade a los círculos de este tick, unido a la raíz r
+    private int agregar(CirculoBuffer cuerpos, int i, int r, int m) {
+        double velocidad2 = velocidad * velocidad;
+        double v2 = cuerpos.getMovX(i) * cuerpos.getMovX(i) + cuerpos.getMovY(i) * cuerpos.getMovY(i);
+        double radio = cuerpos.getRadio(i);
+        boolean enCalma = v2 <= velocidad2 && 0.5 * radio * radio * v2 <= energia;
+        calma[i] = enCalma ? Math.min(calma[i] + 1, ticksParaDormir) : 0;
+        padre[i] = r;
+        calmaIsla[i] = ticksParaDormir;
+        siguiente[i] = i;
+        marca[i] = sello;
+        visitados[m] = i;
+        return m + 1;
+    }
+
+    // ajusta los arrays a n círculos; los círculos nuevos empiezan sin calma ni isla
+    private void preparar(int n) {
+        if (calma.length < n) {
+            int capacidad = Math.max(n, calma.length + (calma.length >> 1));
+            calma = Arrays.copyOf(calma, capacidad);
+            isla = Arrays.copyOf(isla, capacidad);
+            siguiente = Arrays.copyOf(siguiente, capacidad);
+            marca = Arrays.copyOf(marca, capacidad);
+            padre = new int[capacidad];
+            calmaIsla = new int[capacidad];
+            visitados = new int[capacidad];
+        }
+        if (n < tamanio)
+            tamanio = 0;   // el buffer se ha vaciado: se empieza de nuevo
+        Arrays.fill(calma, tamanio, n, 0);
+        Arrays.fill(isla, tamanio, n, -1);
+        Arrays.fill(marca, tamanio, n, 0);
+        tamanio = n;
+    }
+
+    // raíz del conjunto de i, acortando el camino por el que se pasa
+    private int raiz(int i) {
+        while (padre[i] != i) {
+            padre[i] = padre[padre[i]];
+            i = padre[i];
+        }
+        return i;
+    }
+}
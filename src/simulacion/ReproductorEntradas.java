@@ -0,0 +1,101 @@
+package simulacion;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Esta clase representa la reproducción de una sesión grabada con {@link GrabadorEntradas}.
+ * <p>
+ * Lee el registro completo a través de un {@link FileChannel}, crea el generador
+ * aleatorio con la semilla grabada y hace avanzar la simulación tick a tick,
+ * aplicando cada entrada en el mismo tick en que se aplicó al grabarla. No espera
+ * entre ticks ni dibuja nada, así que una sesión de horas se repite en segundos.
+ */
+public class ReproductorEntradas {
+
+    private final ByteBuffer registro;
+    private final long semilla;
+
+    /**
+     * Constructor que lee un registro de entradas y comprueba su cabecera.
+     *
+     * @param fichero El fichero con la sesión grabada.
+     * @throws IOException Si no se puede leer el fichero.
+     * @throws IllegalArgumentException Si el fichero no es un registro de entradas válido.
+     */
+    public ReproductorEntradas(Path fichero) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+            if (canal.size() > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Registro de entradas demasiado grande: " + fichero);
+            registro = ByteBuffer.allocate((int) canal.size());
+            while (registro.hasRemaining())
+                if (canal.read(registro) < 0)
+                    break;
+            registro.flip();
+        }
+        if (registro.remaining() < Integer.BYTES + Short.BYTES + Long.BYTES
+                || registro.getInt() != GrabadorEntradas.MAGICO)
+            throw new IllegalArgumentException("El fichero no es un registro de entradas: " + fichero);
+        short version = registro.getShort();
+        if (version != GrabadorEntradas.VERSION)
+            throw new IllegalArgumentException("Versión de registro de entradas no soportada: " + version);
+        semilla = registro.getLong();
+    }
+
+    /**
+     * Obtiene la semilla del generador aleatorio de la sesión.
+     *
+     * @return La semilla grabada.
+     */
+    public long getSemilla() {
+        return semilla;
+    }
+
+    /**
+     * Reproduce la sesión sobre una simulación, que debe estar configurada igual
+     * que al grabar y sin haber avanzado ningún tick.
+     *
+     * @param sim La simulación sobre la que se aplican las entradas.
+     * @return El número de entradas aplicadas.
+     * @throws IllegalArgumentException Si el registro está dañado.
+     */
+    public int reproducir(Simulacion sim) {
+        Random random = new Random(semilla);
+        ByteBuffer entradas = registro.duplicate();
+        int aplicadas = 0;
+        try {
+            while (entradas.hasRemaining()) {
+                long tick = entradas.getLong();
+                byte tipo = entradas.get();
+                while (sim.getTicks() < tick)
+                    sim.paso();
+                if (tipo == GrabadorEntradas.FIN)
+                    break;
+                switch (tipo) {
+                    case GrabadorEntradas.CLICK:
+                        double x = entradas.getDouble();
+                        double y = entradas.getDouble();
+                        sim.generar(x, y, random);
+                        break;
+                    case GrabadorEntradas.FASE:
+                        byte[] nombre = new byte[entradas.get() & 0xFF];
+                        entradas.get(nombre);
+                        sim.setFaseAmplia(FaseAmplia.crear(new String(nombre, StandardCharsets.US_ASCII)));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Tipo de entrada desconocido: " + tipo);
+                }
+                aplicadas++;
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("El registro de entradas está incompleto", e);
+        }
+        return aplicadas;
+    }
+}
@@ -0,0 +1,194 @@
+package simulacion;
+
+import objetos.CirculoBuffer;
+
+/**
+ * Esta clase representa la respuesta a los choques entre círculos mediante impulsos.
+ * <p>
+ * Cada círculo tiene una masa proporcional al cuadrado de su radio (su área), así
+ * que en un choque el círculo pequeño sale despedido y el grande apenas cambia de
+ * velocidad. Para cada par en contacto se aplica un impulso a lo largo de la normal
+ * que invierte la velocidad relativa con el coeficiente de restitución, y después
+ * se separan los círculos en proporción inversa a su masa para corregir la
+ * superposición que queda.
+ * <p>
+ * En un montón denso cada círculo toca a varios a la vez y resolver un par
+ * deshace en parte el anterior, así que la lista de contactos se recorre varias
+ * veces. Las normales y las masas efectivas de cada par se calculan una sola vez
+ * por tick y se guardan en arrays que se reutilizan, sin crear objetos por par.
+ */
+public class ResolutorImpulsos {
+
+    private static final int ITERACIONES = 4;
+    private static final double CORRECCION = 0.8;
+    private static final double HOLGURA = 0.01;
+
+    private int iteraciones = ITERACIONES;
+    private double restitucion = 1;
+    private double correccion = CORRECCION;
+
+    private double[] normalX = new double[0];
+    private double[] normalY = new double[0];
+    private double[] masaNormal = new double[0];
+
+    /**
+     * Obtiene el número de pasadas sobre la lista de contactos.
+     *
+     * @return El número de iteraciones por tick.
+     */
+    public int getIteraciones() {
+        return iteraciones;
+    }
+
+    /**
+     * Establece el número de pasadas sobre la lista de contactos. Más pasadas
+     * estabilizan los montones grandes a cambio de más tiempo por tick.
+     *
+     * @param iteraciones El número de iteraciones por tick.
+     * @throws IllegalArgumentException Si el número de iteraciones no es positivo.
+     */
+    public void setIteraciones(int iteraciones) {
+        if (iteraciones <= 0)
+            throw new IllegalArgumentException("El número de iteraciones debe ser positivo");
+        this.iteraciones = iteraciones;
+    }
+
+    /**
+     * Obtiene el coeficiente de restitución.
+     *
+     * @return El coeficiente de restitución, entre 0 y 1.
+     */
+    public double getRestitucion() {
+        return restitucion;
+    }
+
+    /**
+     * Establece el coeficiente de restitución: 1 para choques perfectamente
+     * elásticos y 0 para que los círculos dejen de acercarse sin rebotar.
+     *
+     * @param restitucion El coeficiente de restitución.
+     * @throws IllegalArgumentException Si el coeficiente no está entre 0 y 1.
+     */
+    public void setRestitucion(double restitucion) {
+        if (restitucion < 0 || restitucion > 1)
+            throw new IllegalArgumentException("La restitución debe estar entre 0 y 1");
+        this.restitucion = restitucion;
+    }
+
+    /**
+     * Obtiene la fracción de la superposición que se corrige en cada pasada.
+     *
+     * @return La fracción de corrección de posición.
+     */
+    public double getCorreccion() {
+        return correccion;
+    }
+
+    /**
+     * Establece la fracción de la superposición que se corrige en cada pasada.
+     * Con 0 no se corrigen las posiciones; con 1 se separan del todo, lo que
+     * puede hacer vibrar los montones.
+     *
+     * @param correccion La fracción de corrección de posición.
+     * @throws IllegalArgumentException Si la fracción no está entre 0 y 1.
+     */
+    public void setCorreccion(double correccion) {
+        if (correccion < 0 || correccion > 1)
+            throw new IllegalArgumentException("La corrección debe estar entre 0 y 1");
+        this.correccion = correccion;
+    }
+
+    /**
+     * Resuelve una lista de contactos: aplica los impulsos y corrige las posiciones
+     * durante el número de iteraciones configurado.
+     *
+     * @param cuerpos   Los círculos de la simulación.
+     * @param contactos Los pares de círculos en contacto.
+     */
+    public void resolver(CirculoBuffer cuerpos, ParesContacto contactos) {
+        int m = contactos.tamanio();
+        if (m == 0)
+            return;
+        preparar(cuerpos, contactos);
+        for (int it = 0; it < iteraciones; it++) {
+            for (int k = 0; k < m; k++)
+                aplicarImpulso(cuerpos, contactos.getA(k), contactos.getB(k),
+                        normalX[k], normalY[k], masaNormal[k]);
+            if (correccion > 0)
+                for (int k = 0; k < m; k++)
+                    corregir(cuerpos, contactos.getA(k), contactos.getB(k));
+        }
+    }
+
+    /**
+     * Aplica el impulso de choque a un único par de círculos, sin corregir sus
+     * posiciones. Es lo que usa la detección continua, que lleva los círculos
+     * justo al punto de contacto antes de hacerlos rebotar.
+     *
+     * @param cuerpos Los círculos de la simulación.
+     * @param i       El índice del primer círculo.
+     * @param j       El índice del segundo círculo.
+     */
+    public void impulso(CirculoBuffer cuerpos, int i, int j) {
+        double dx = cuerpos.getX(i) - cuerpos.getX(j);
+        double dy = cuerpos.getY(i) - cuerpos.getY(j);
+        double d = Math.sqrt(dx * dx + dy * dy);
+        if (d == 0)
+            return;
+        aplicarImpulso(cuerpos, i, j, dx / d, dy / d, 1 / (masaInversa(cuerpos, i) + masaInversa(cuerpos, j)));
+    }
+
+    // normal y masa efectiva de cada contacto, calculadas una vez por tick
+    private void preparar(CirculoBuffer cuerpos, ParesContacto contactos) {
+        int m = contactos.tamanio();
+        if (normalX.length < m) {
+            int capacidad = Math.max(m, normalX.length * 2);
+            normalX = new double[capacidad];
+            normalY = new double[capacidad];
+            masaNormal = new double[capacidad];
+        }
+        for (int k = 0; k < m; k++) {
+            int i = contactos.getA(k);
+            int j = contactos.getB(k);
+            double dx = cuerpos.getX(i) - cuerpos.getX(j);
+            double dy = cuerpos.getY(i) - cuerpos.getY(j);
+            double d = Math.sqrt(dx * dx + dy * dy);
+            // dos centros en el mismo punto no tienen normal: el impulso se anula
+            normalX[k] = d == 0 ? 0 : dx / d;
+            normalY[k] = d == 0 ? 0 : dy / d;
+            masaNormal[k] = 1 / (masaInversa(cuerpos, i) + masaInversa(cuerpos, j));
+        }
+    }
+
+    private void aplicarImpulso(CirculoBuffer cuerpos, int i, int j, double nx, double ny, double masa) {
+        double vn = (cuerpos.getMovX(i) - cuerpos.getMovX(j)) * nx + (cuerpos.getMovY(i) - cuerpos.getMovY(j)) * ny;
+        // solo si se acercan; si ya se alejan se deja que se separen
+        if (vn >= 0)
+            return;
+        double p = -(1 + restitucion) * vn * masa;
+        double wi = masaInversa(cuerpos, i) * p;
+        double wj = masaInversa(cuerpos, j) * p;
+        cuerpos.movimiento(i, cuerpos.getMovX(i) + wi * nx, cuerpos.getMovY(i) + wi * ny);
+        cuerpos.movimiento(j, cuerpos.getMovX(j) - wj * nx, cuerpos.getMovY(j) - wj * ny);
+    }
+
+    // separa los círculos una fracción de su superposición, más el que menos pesa
+    private void corregir(CirculoBuffer cuerpos, int i, int j) {
+        double dx = cuerpos.getX(i) - cuerpos.getX(j);
+        double dy = cuerpos.getY(i) - cuerpos.getY(j);
+        double d = Math.sqrt(dx * dx + dy * dy);
+        double superposicion = cuerpos.getRadio(i) + cuerpos.getRadio(j) - d;
+        if (d == 0 || superposicion <= HOLGURA)
+            return;
+        double wi = masaInversa(cuerpos, i);
+        double wj = masaInversa(cuerpos, j);
+        double s = correccion * (superposicion - HOLGURA) / (wi + wj) / d;
+        cuerpos.posicion(i, cuerpos.getX(i) + dx * s * wi, cuerpos.getY(i) + dy * s * wi);
+        cuerpos.posicion(j, cuerpos.getX(j) - dx * s * wj, cuerpos.getY(j) - dy * s * wj);
+    }
+
+    private static double masaInversa(CirculoBuffer cuerpos, int i) {
+        double r = cuerpos.getRadio(i);
+        return 1 / (r * r);
+    }
+}
@@ -0,0 +1,393 @@
+package simulacion;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import objetos.CirculoBuffer;
+import objetos.Rectangulo;
+
+/**
+ * Esta clase representa la simulación de círculos que rebotan dentro de una ventana.
+ * <p>
+ * Reúne las fases de creación, movimiento y rebote que comparten el programa
+ * con ventana y el modo sin ventana. Si se le asigna una {@link FaseAmplia},
+ * los círculos también chocan entre sí y un {@link ResolutorImpulsos} responde a
+ * los choques. Con la detección continua activada, los choques se buscan a lo
+ * largo de todo el tick y no solo en la posición final,
+ * de modo que los círculos rápidos no atraviesan las paredes ni a otros círculos.
+ * Con un {@link Reposo}, los círculos que se quedan quietos se duermen y dejan
+ * de costar tiempo hasta que algo los toca.
+ * No depende de {@code StdDraw}, así que se puede ejecutar sin arrancar AWT ni Swing.
+ */
+public class Simulacion {
+
+    private static final int UMBRAL_PARALELO = 32768;
+
+    private final CirculoBuffer cuerpos;
+    private final Rectangulo ventana;
+    private long ticks;
+    private int umbralParalelo = UMBRAL_PARALELO;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private FaseAmplia faseAmplia;
+    private final ParesContacto contactos = new ParesContacto();
+    private ResolutorImpulsos resolutor = new ResolutorImpulsos();
+    private Reposo reposo;
+    private int[] activos = new int[0];
+    private boolean continua;
+    private long[] impactos = new long[0];
+    private int[] marca = new int[0];
+    private int sello;
+
+    /**
+     * Constructor que inicializa una simulación vacía dentro de un rectángulo.
+     *
+     * @param ventana El rectángulo contra cuyos lados rebotan los círculos.
+     * @throws IllegalArgumentException Si la ventana es nula.
+     */
+    public Simulacion(Rectangulo ventana) {
+        if (ventana == null)
+            throw new IllegalArgumentException("La simulación necesita un Rectangulo como ventana");
+        this.ventana = ventana;
+        this.cuerpos = new CirculoBuffer();
+    }
+
+    /**
+     * Obtiene los círculos de la simulación.
+     *
+     * @return El buffer con todos los círculos.
+     */
+    public CirculoBuffer getCuerpos() {
+        return cuerpos;
+    }
+
+    /**
+     * Obtiene el rectángulo que limita la simulación.
+     *
+     * @return La ventana de la simulación.
+     */
+    public Rectangulo getVentana() {
+        return ventana;
+    }
+
+    /**
+     * Obtiene el número de ticks simulados.
+     *
+     * @return El número de ticks simulados desde el inicio.
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    // solo para restaurar un punto de control
+    void setTicks(long ticks) {
+        this.ticks = ticks;
+    }
+
+    /**
+     * Obtiene el umbral de paralelismo.
+     *
+     * @return El número máximo de círculos que se actualizan en un solo hilo.
+     */
+    public int getUmbralParalelo() {
+        return umbralParalelo;
+    }
+
+    /**
+     * Establece el umbral de paralelismo. Las escenas con como mucho este número
+     * de círculos se actualizan en el hilo que llama; las más grandes se reparten
+     * en trozos de ese tamaño entre los hilos del pool.
+     *
+     * @param umbral El número máximo de círculos que se actualizan en un solo hilo.
+     * @throws IllegalArgumentException Si el umbral no es positivo.
+     */
+    public void setUmbralParalelo(int umbral) {
+        if (umbral <= 0)
+            throw new IllegalArgumentException("El umbral de paralelismo debe ser positivo");
+        this.umbralParalelo = umbral;
+    }
+
+    /**
+     * Establece el pool de hilos que ejecuta la actualización en paralelo.
+     * Por defecto se usa {@link ForkJoinPool#commonPool()}.
+     *
+     * @param pool El pool de hilos a usar.
+     * @throws IllegalArgumentException Si el pool es nulo.
+     */
+    public void setPool(ForkJoinPool pool) {
+        if (pool == null)
+            throw new IllegalArgumentException("El pool no puede ser null");
+        this.pool = pool;
+    }
+
+    /**
+     * Obtiene la fase amplia usada para las colisiones entre círculos.
+     *
+     * @return La fase amplia, o null si los círculos no chocan entre sí.
+     */
+    public FaseAmplia getFaseAmplia() {
+        return faseAmplia;
+    }
+
+    /**
+     * Establece la fase amplia usada para las colisiones entre círculos.
+     *
+     * @param faseAmplia La fase amplia a usar, o null para que los círculos no choquen entre sí.
+     */
+    public void setFaseAmplia(FaseAmplia faseAmplia) {
+        this.faseAmplia = faseAmplia;
+    }
+
+    /**
+     * Obtiene el resolutor que responde a los choques entre círculos.
+     *
+     * @return El resolutor de impulsos.
+     */
+    public ResolutorImpulsos getResolutor() {
+        return resolutor;
+    }
+
+    /**
+     * Establece el resolutor que responde a los choques entre círculos.
+     *
+     * @param resolutor El resolutor de impulsos a usar.
+     * @throws IllegalArgumentException Si el resolutor es nulo.
+     */
+    public void setResolutor(ResolutorImpulsos resolutor) {
+        if (resolutor == null)
+            throw new IllegalArgumentException("El resolutor no puede ser null");
+        this.resolutor = resolutor;
+    }
+
+    /**
+     * Indica si la detección de colisiones es continua.
+     *
+     * @return true si la detección es continua, false si es discreta.
+     */
+    public boolean isContinua() {
+        return continua;
+    }
+
+    /**
+     * Activa o desactiva la detección continua de colisiones. Cuesta algo más por
+     * tick, pero permite velocidades más altas con menos ticks por segundo.
+     *
+     * @param continua true para detectar los choques a lo largo de todo el tick.
+     */
+    public void setContinua(boolean continua) {
+        this.continua = continua;
+    }
+
+    /**
+     * Obtiene el seguimiento del reposo de los círculos.
+     *
+     * @return El seguimiento del reposo, o null si los círculos nunca se duermen.
+     */
+    public Reposo getReposo() {
+        return reposo;
+    }
+
+    /**
+     * Establece el seguimiento del reposo de los círculos. Al quitarlo se
+     * despiertan todos los círculos dormidos.
+     *
+     * @param reposo El seguimiento del reposo a usar, o null para que los círculos nunca se duerman.
+     */
+    public void setReposo(Reposo reposo) {
+        this.reposo = reposo;
+        if (reposo == null)
+            for (int i = 0; i < cuerpos.tamanio(); i++)
+                cuerpos.despertar(i);
+    }
+
+    /**
+     * Obtiene el número de círculos despiertos, que son los que se integran en cada tick.
+     *
+     * @return El número de círculos que no están dormidos.
+     */
+    public int getDespiertos() {
+        return cuerpos.despiertos();
+    }
+
+    /**
+     * Obtiene los pares de círculos que han chocado en el último tick: los que se
+     * superponían al final del tick con detección discreta, o los que se han tocado
+     * durante el tick con detección continua.
+     *
+     * @return La lista de contactos del último tick.
+     */
+    public ParesContacto getContactos() {
+        return contactos;
+    }
+
+    /**
+     * Crea un círculo en la posición dada con radio, velocidad y color aleatorios.
+     *
+     * @param x La coordenada x del centro del nuevo círculo.
+     * @param y La coordenada y del centro del nuevo círculo.
+     * @param r El generador de números aleatorios a usar.
+     * @return El índice del círculo creado.
+     */
+    public int generar(double x, double y, Random r) {
+        double radio = r.nextDouble(5, 10);
+        double movX = r.nextDouble(-2, 2);
+        double movY = r.nextDouble(-2, 2);
+        int color = 0xFF000000 | r.nextInt(256) << 16 | r.nextInt(256) << 8 | r.nextInt(256);
+        return cuerpos.agregar(x, y, radio, movX, movY, color);
+    }
+
+    /**
+     * Simula un tick: mueve todos los círculos, los hace rebotar contra la ventana
+     * y, si hay fase amplia, resuelve los choques entre círculos. Si hay
+     * seguimiento del reposo, al final duerme o despierta cada isla de círculos.
+     */
+    public void paso() {
+        if (continua) {
+            if (faseAmplia != null)
+                choquesContinuos();
+            integrar();
+        } else {
+            integrar();
+            if (faseAmplia != null) {
+                buscarContactos();
+                resolutor.resolver(cuerpos, contactos);
+            }
+        }
+        if (reposo != null) {
+            if (faseAmplia == null)
+                contactos.vaciar();
+            reposo.actualizar(cuerpos, contactos);
+        }
+        ticks++;
+    }
+
+    // movimiento y rebote contra la ventana, en paralelo si la escena es grande;
+    // si hay círculos dormidos solo se recorren los despiertos
+    private void integrar() {
+        int n = cuerpos.tamanio();
+        int[] indices = null;
+        if (cuerpos.despiertos() < n) {
+            indices = despiertos();
+            n = cuerpos.despiertos();
+        }
+        if (n > umbralParalelo)
+            pool.invoke(new ActualizacionParalela(cuerpos, ventana, indices, 0, n, umbralParalelo, continua));
+        else if (indices != null && continua)
+            cuerpos.moverContinuo(ventana, indices, 0, n);
+        else if (indices != null)
+            cuerpos.moverYRebotar(ventana, indices, 0, n);
+        else if (continua)
+            cuerpos.moverContinuo(ventana);
+        else
+            cuerpos.moverYRebotar(ventana);
+    }
+
+    // índices de los círculos despiertos, en un array que se reutiliza
+    private int[] despiertos() {
+        int n = cuerpos.despiertos();
+        if (activos.length < n)
+            activos = new int[Math.max(n, activos.length * 2)];
+        cuerpos.copiarDespiertos(activos);
+        return activos;
+    }
+
+    // busca los choques entre círculos durante el tick y los resuelve en orden de instante,
+    // cada círculo como mucho una vez por tick
+    private void choquesContinuos() {
+        int n = cuerpos.tamanio();
+        contactos.vaciar();
+        faseAmplia.buscarPares(cuerpos, velocidadMaxima(), contactos);
+
+        if (impactos.length < contactos.tamanio())
+            impactos = new long[Math.max(contactos.tamanio(), impactos.length * 2)];
+        int m = 0;
+        for (int k = 0; k < contactos.tamanio(); k++) {
+            double t = cuerpos.tiempoImpacto(contactos.getA(k), contactos.getB(k));
+            // el instante va en los bits altos para que ordenar los long ordene por instante
+            if (t <= 1)
+                impactos[m++] = (long) (t * (1 << 30)) << 32 | k;
+        }
+        Arrays.sort(impactos, 0, m);
+
+        if (marca.length < n)
+            marca = new int[Math.max(n, marca.length * 2)];
+        if (++sello == 0) {
+            Arrays.fill(marca, 0);
+            sello = 1;
+        }
+        int resueltos = 0;
+        for (int e = 0; e < m; e++) {
+            int k = (int) impactos[e];
+            int i = contactos.getA(k);
+            int j = contactos.getB(k);
+            if (marca[i] == sello || marca[j] == sello)
+                continue;
+            marca[i] = sello;
+            marca[j] = sello;
+            double t = cuerpos.tiempoImpacto(i, j);
+            // se llevan al punto de contacto, rebotan, y se retrasan con la velocidad nueva
+            // para que el movimiento normal del tick complete el resto del recorrido
+            avanzar(i, t);
+            avanzar(j, t);
+            resolutor.impulso(cuerpos, i, j);
+            // un círculo dormido que recibe un choque tiene que moverse ya en este tick
+            cuerpos.despertar(i);
+            cuerpos.despertar(j);
+            avanzar(i, -t);
+            avanzar(j, -t);
+            impactos[resueltos++] = k;   // e >= resueltos: esa posición ya se ha procesado
+        }
+        // se dejan en contactos solo los pares resueltos; en orden creciente de k,
+        // cada par se escribe en una posición que ya no hace falta leer
+        Arrays.sort(impactos, 0, resueltos);
+        for (int r = 0; r < resueltos; r++) {
+            int k = (int) impactos[r];
+            contactos.set(r, contactos.getA(k), contactos.getB(k));
+        }
+        contactos.recortar(resueltos);
+    }
+
+    private void avanzar(int i, double t) {
+        cuerpos.posicion(i, cuerpos.getX(i) + cuerpos.getMovX(i) * t, cuerpos.getY(i) + cuerpos.getMovY(i) * t);
+    }
+
+    // los círculos dormidos tienen velocidad cero, así que solo se miran los despiertos
+    private double velocidadMaxima() {
+        double max = 0;
+        for (int k = 0; k < cuerpos.despiertos(); k++) {
+            int i = cuerpos.getDespierto(k);
+            double vx = cuerpos.getMovX(i);
+            double vy = cuerpos.getMovY(i);
+            max = Math.max(max, vx * vx + vy * vy);
+        }
+        return Math.sqrt(max);
+    }
+
+    // candidatos de la fase amplia confirmados con la prueba exacta de superposición
+    private void buscarContactos() {
+        contactos.vaciar();
+        faseAmplia.buscarPares(cuerpos, contactos);
+        int confirmados = 0;
+        for (int k = 0; k < contactos.tamanio(); k++) {
+            int i = contactos.getA(k);
+            int j = contactos.getB(k);
+            if (cuerpos.seSuperponen(i, j))
+                contactos.set(confirmados++, i, j);
+        }
+        contactos.recortar(confirmados);
+    }
+
+    /**
+     * Simula varios ticks seguidos, guardando antes del último las posiciones
+     * que se usan para interpolar al dibujar.
+     *
+     * @param n El número de ticks a simular.
+     */
+    public void avanzar(int n) {
+        for (int t = 0; t < n; t++) {
+            if (t == n - 1)
+                cuerpos.guardarPosiciones();
+            paso();
+        }
+    }
+}
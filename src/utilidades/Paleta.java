@@ -0,0 +1,59 @@
+package utilidades;
+
+import java.awt.Color;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Esta clase reúne las utilidades para trabajar con colores empaquetados en un
+ * {@code int} (ARGB), que es como guardan su color los puntos y los círculos.
+ * <p>
+ * Para los métodos que todavía necesitan un {@link Color}, entre ellos los de
+ * {@link StdDraw} que reciben colores empaquetados, {@link #color(int)} devuelve
+ * siempre el mismo objeto para el mismo valor ARGB mientras no lo desplace otro
+ * color, en lugar de crear uno nuevo en cada llamada. La tabla tiene un tamaño
+ * fijo, así que no crece aunque se usen millones de colores.
+ * <p>
+ * Se puede usar desde varios hilos a la vez, por ejemplo desde el de la
+ * simulación y el de dibujo. Cada color se publica con escritura de liberación
+ * y se lee con lectura de adquisición, así que un hilo nunca ve un Color a medio
+ * construir. Dos hilos que piden a la vez colores distintos de la misma entrada
+ * pueden desplazarse el uno al otro y crear algún Color de más.
+ */
+public final class Paleta {
+
+    /** Negro opaco, el color por defecto. */
+    public static final int NEGRO = 0xFF000000;
+
+    // tabla de colores compartidos indexada por un hash del valor ARGB
+    private static final int TAMANIO = 1024;
+    private static final AtomicReferenceArray<Color> COLORES = new AtomicReferenceArray<Color>(TAMANIO);
+
+    private Paleta() {
+    }
+
+    /**
+     * Obtiene el color correspondiente a un valor ARGB.
+     *
+     * @param argb El color empaquetado, con el canal alfa en los 8 bits altos.
+     * @return Un Color compartido con ese valor. No se debe comparar por referencia.
+     */
+    public static Color color(int argb) {
+        int i = (argb * 0x9E3779B9) >>> 22;
+        Color c = COLORES.getAcquire(i);
+        if (c == null || c.getRGB() != argb) {
+            c = new Color(argb, true);
+            COLORES.setRelease(i, c);
+        }
+        return c;
+    }
+
+    /**
+     * Empaqueta un color en un valor ARGB.
+     *
+     * @param c El color a empaquetar. Si es null, se usa el negro.
+     * @return El color empaquetado.
+     */
+    public static int argb(Color c) {
+        return c == null ? NEGRO : c.getRGB();
+    }
+}
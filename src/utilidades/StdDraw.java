@@ -36,8 +36,8 @@ import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
 import java.awt.Image;
-import java.awt.MediaTracker;
 import java.awt.RenderingHints;
 import java.awt.Toolkit;
 
@@ -49,6 +49,7 @@ import java.awt.event.MouseMotionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Arc2D;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.GeneralPath;
@@ -56,6 +57,7 @@ import java.awt.geom.Line2D;
 import java.awt.geom.Rectangle2D;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.awt.image.DirectColorModel;
 import java.awt.image.WritableRaster;
 
@@ -65,9 +67,17 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 
-import java.util.LinkedList;
-import java.util.TreeSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import javax.imageio.ImageIO;
 
 import javax.swing.ImageIcon;
@@ -155,6 +165,24 @@ import javax.swing.KeyStroke;
  *  <li> {@link #filledRectangle(double x, double y, double halfWidth, double halfHeight)}
  *  </ul>
  *  <p>
+ *  <b>Drawing in batches.</b>
+ *  To draw many primitives of the same kind, such as the particles of a
+ *  simulation, store their coordinates in arrays and draw the first
+ *  <em>n</em> of them with one call to one of the following methods:
+ *  <ul>
+ *  <li> {@link #lines(double[] x0, double[] y0, double[] x1, double[] y1, int[] argb, int n)}
+ *  <li> {@link #points(double[] x, double[] y, int[] argb, int n)}
+ *  <li> {@link #filledCircles(double[] x, double[] y, double[] radius, int[] argb, int n)}
+ *  <li> {@link #filledRectangles(double[] x, double[] y, double[] halfWidth, double[] halfHeight, int[] argb, int n)}
+ *  </ul>
+ *  <p>
+ *  Each primitive has its own color, as a packed ARGB value such as
+ *  {@code 0xFF0000FF} for opaque blue, or all of them use the pen color
+ *  if {@code argb} is {@code null}. The arguments are checked once per call,
+ *  the same shape object is reused for every primitive, and the canvas is
+ *  shown at most once, so a batch of 100,000 circles is much faster than
+ *  100,000 calls to {@code filledCircle()}.
+ *  <p>
  *  <b>Circular arcs.</b>
  *  You can draw circular arcs with the following method:
  *  <ul>
@@ -209,6 +237,7 @@ import javax.swing.KeyStroke;
  *  <ul>
  *  <li> {@link #setPenColor(int red, int green, int blue)}
  *  <li> {@link #setPenColor(Color color)}
+ *  <li> {@link #setPenColor(int argb)}
  *  </ul>
  *  <p>
  *  The first method allows you to specify colors using the RGB color system.
@@ -224,6 +253,10 @@ import javax.swing.KeyStroke;
  *  {@link #PRINCETON_ORANGE}.
  *  For example, {@code StdDraw.setPenColor(StdDraw.MAGENTA)} sets the
  *  pen color to magenta.
+ *  The third method takes a color packed into an {@code int}, such as
+ *  {@code 0xFFFF00FF} for opaque magenta, which saves creating a {@link Color}
+ *  for each object when drawing many objects of different colors.
+ *  Setting the pen color to the color it already has does nothing.
  *  <p>
  *  <b>Canvas size.</b>
  *  By default, all drawing takes places in a 512-by-512 canvas.
@@ -240,6 +273,13 @@ import javax.swing.KeyStroke;
  *  For example, {@code StdDraw.setCanvasSize(800, 800)}
  *  sets the canvas size to be 800-by-800 pixels.
  *  <p>
+ *  On high-resolution screens, such as Retina displays, the canvas is drawn
+ *  at two or more image pixels per canvas pixel so that it looks sharp.
+ *  By default this backing scale matches the screen; you can set it yourself with
+ *  {@link #setBackingScale(int scale)}, for example to 1 to draw faster, or to 2
+ *  to save sharper images. Files saved with {@link #save(String filename)} have
+ *  the canvas size times the backing scale.
+ *  <p>
  *  <b>Canvas scale and coordinate system.</b>
  *  By default, all drawing takes places in the unit square, with (0, 0) at
  *  lower left and (1, 1) at upper right. You can change the default
@@ -317,6 +357,18 @@ import javax.swing.KeyStroke;
  *  We recommend using PNG for drawing that consist solely of geometric shapes and JPEG 
  *  for drawings that contains pictures.
  *  <p>
+ *  Saving a file encodes the image on the calling thread, which is too slow to do
+ *  once per frame. To record an animation, use the following methods instead:
+ *  <ul>
+ *  <li> {@link #startCapture(String pattern, int encoders, int capacity, boolean block)}
+ *  <li> {@link #captureFrame()}
+ *  <li> {@link #stopCapture()}
+ *  </ul>
+ *  <p>
+ *  Each call to {@code captureFrame()} copies the frame shown by the last call to
+ *  {@code show()} into a pooled buffer and returns; background threads encode the
+ *  buffers to numbered files.
+ *  <p>
  *  <b>Clearing the canvas.</b>
  *  To clear the entire drawing canvas, you can use the following methods:
  *  <ul>
@@ -368,6 +420,12 @@ import javax.swing.KeyStroke;
  *  The {@link #clear()}, {@link #show()}, and {@link #pause(int t)} methods
  *  support the first, third, and fourth of these steps, respectively.
  *  <p>
+ *  The {@code show()} method copies only the part of the offscreen canvas
+ *  that has been drawn on since the previous call, or the whole canvas if
+ *  that part covers more than half of it. An animation that erases and
+ *  redraws only what moves, instead of clearing the whole canvas, therefore
+ *  shows each frame faster.
+ *  <p>
  *  For example, this code fragment animates two balls moving in a circle.
  *  <pre>
  *   StdDraw.setScale(-2, +2);
@@ -392,13 +450,25 @@ import javax.swing.KeyStroke;
  *  <li> {@link #isMousePressed()}
  *  <li> {@link #mouseX()}
  *  <li> {@link #mouseY()}
+ *  <li> {@link #mousePosition()}
  *  </ul>
  *  <p>
  *  The first method tells you whether a mouse button is currently being pressed.
- *  The last two methods tells you the <em>x</em>- and <em>y</em>-coordinates of the mouse's
+ *  The other methods tell you the <em>x</em>- and <em>y</em>-coordinates of the mouse's
  *  current position, using the same coordinate system as the canvas (the unit square, by default).
  *  You should use these methods in an animation loop that waits a short while before trying
  *  to poll the mouse for its current state.
+ *  <p>
+ *  Polling can miss a click that starts and ends between two frames. To see every
+ *  press, release, and drag, drain the mouse event queue once per frame:
+ *  <ul>
+ *  <li> {@link #hasNextMouseEvent()}
+ *  <li> {@link #nextMouseEvent()}
+ *  <li> {@link #mouseEventX()}, {@link #mouseEventY()}, and {@link #mouseEventTime()}
+ *  </ul>
+ *  <p>
+ *  The queue holds up to {@link #MOUSE_EVENT_CAPACITY} events; events that arrive
+ *  while it is full are discarded and counted by {@link #mouseEventsDropped()}.
  *  You can use the following methods to intercept keyboard events:
  *  <ul>
  *  <li> {@link #hasNextKeyTyped()}
@@ -407,6 +477,8 @@ import javax.swing.KeyStroke;
  *  </ul>
  *  <p>
  *  If the user types lots of keys, they will be saved in a list until you process them.
+ *  The list holds up to {@link #KEY_TYPED_CAPACITY} characters; keys typed while it is
+ *  full are discarded and counted by {@link #keysTypedDropped()}.
  *  The first method tells you whether the user has typed a key (that your program has
  *  not yet processed).
  *  The second method returns the next key that the user typed (that your program has
@@ -454,9 +526,24 @@ import javax.swing.KeyStroke;
  *       created can be intolerably inefficient on many computer systems.
  *  <li> When drawing computer animations, call {@code show()}
  *       only once per frame, not after drawing each individual object.
+ *  <li> To draw many circles, rectangles, points or lines, keep them in
+ *       arrays and draw them with one call to {@code filledCircles()},
+ *       {@code filledRectangles()}, {@code points()} or {@code lines()}.
+ *  <li> If an animation draws many filled circles of only a few sizes and
+ *       colors, call {@link #enableCircleSprites()} so that each kind of
+ *       circle is rasterized once and then copied, at the cost of up to half
+ *       a pixel of error in its position.
+ *  <li> For scenes with a very large number of small filled circles,
+ *       rectangles or points, call {@link #enableRasterRendering(boolean)}
+ *       before drawing them, so that their pixels are written directly into
+ *       the canvas, and {@link #disableRasterRendering()} afterwards.
  *  <li> If you call {@code picture()} multiple times with the same filename,
- *       Java will cache the image, so you do not incur the cost of reading
- *       from a file each time.
+ *       the decoded image is cached, so you do not incur the cost of reading
+ *       and decoding the file each time. The cache keeps the most recently
+ *       drawn images up to a total of {@link #DEFAULT_IMAGE_CACHE_SIZE} bytes;
+ *       use {@link #setImageCacheSize(long)} to change it and
+ *       {@link #imageCacheHits()} and {@link #imageCacheMisses()} to check
+ *       whether it is large enough for your animation.
  *  </ul>
  *  <p>
  *  <b>Known bugs and issues.</b>
@@ -579,6 +666,18 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     private static int width  = DEFAULT_SIZE;
     private static int height = DEFAULT_SIZE;
 
+    /**
+     * Backing scale that makes {@link #setBackingScale(int)} match the scale of the screen.
+     */
+    public static final int AUTO_BACKING_SCALE = 0;
+
+    // largest backing scale accepted by setBackingScale()
+    private static final int MAX_BACKING_SCALE = 4;
+
+    // requested backing scale, and the one in effect: image pixels per canvas pixel
+    private static int requestedBackingScale = AUTO_BACKING_SCALE;
+    private static int backingScale;
+
     // default pen radius
     private static final double DEFAULT_PEN_RADIUS = 0.002;
 
@@ -588,6 +687,18 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     // show we draw immediately or wait until next show?
     private static boolean defer = false;
 
+    // region of the offscreen image changed since the last show(), in its pixels; empty if x0 >= x1
+    private static int dirtyX0 = Integer.MAX_VALUE, dirtyY0 = Integer.MAX_VALUE;
+    private static int dirtyX1 = Integer.MIN_VALUE, dirtyY1 = Integer.MIN_VALUE;
+
+    // rotation (in radians, around (rotationX, rotationY) in canvas pixels) applied to offscreen
+    // by the rotated picture() and text() methods while they draw; 0 the rest of the time
+    private static double rotation = 0;
+    private static double rotationX, rotationY;
+
+    // show() copies the whole frame once the changed region covers this fraction of it
+    private static final double FULL_FRAME_FRACTION = 0.5;
+
     // boundary of drawing canvas, 0% border
     // private static final double BORDER = 0.05;
     private static final double BORDER = 0.00;
@@ -597,9 +708,10 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     private static final double DEFAULT_YMAX = 1.0;
     private static double xmin, ymin, xmax, ymax;
 
-    // for synchronization
-    private static Object mouseLock = new Object();
-    private static Object keyLock = new Object();
+    // the scale as seen by the event dispatch thread: {xmin, xmax, ymin, ymax, width, height},
+    // replaced as a whole (never modified) each time the scale or the canvas size changes
+    private static volatile double[] mouseScale = { DEFAULT_XMIN, DEFAULT_XMAX, DEFAULT_YMIN, DEFAULT_YMAX,
+                                                    DEFAULT_SIZE, DEFAULT_SIZE };
 
     // default font
     private static final Font DEFAULT_FONT = new Font("SansSerif", Font.PLAIN, 16);
@@ -617,16 +729,11 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     // the frame for drawing to the screen
     private static JFrame frame;
 
-    // mouse state
-    private static boolean isMousePressed = false;
-    private static double mouseX = 0;
-    private static double mouseY = 0;
-
-    // queue of typed key characters
-    private static LinkedList<Character> keysTyped = new LinkedList<Character>();
+    // mouse state, written by the event dispatch thread and read without locking;
+    // the position is an {x, y} pair replaced as a whole, so it is never half updated
+    private static volatile boolean isMousePressed = false;
+    private static volatile double[] mousePosition = { 0, 0 };
 
-    // set of key codes currently pressed down
-    private static TreeSet<Integer> keysDown = new TreeSet<Integer>();
 
     // singleton pattern: client can't instantiate
     private StdDraw() { }
@@ -668,20 +775,63 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         init();
     }
 
+    /**
+     * Sets the backing scale, that is, the number of image pixels per canvas pixel
+     * in each direction. The canvas is drawn at this resolution and shown scaled
+     * down to its size, which looks sharper on high-resolution (HiDPI or Retina)
+     * screens but takes the square of the scale times as many pixels to draw, show
+     * and save. By default, the backing scale is {@link #AUTO_BACKING_SCALE}, which
+     * matches the scale of the screen: 2 on a Retina display and 1 on most others.
+     * Like {@link #setCanvasSize(int, int)}, this erases the current drawing and
+     * resets the coordinate system, pen radius, pen color, and font.
+     *
+     * @param  scale the backing scale, between 1 and 4, or {@code AUTO_BACKING_SCALE}
+     * @throws IllegalArgumentException unless {@code scale} is between 1 and 4 or {@code AUTO_BACKING_SCALE}
+     */
+    public static void setBackingScale(int scale) {
+        if (scale != AUTO_BACKING_SCALE && (scale < 1 || scale > MAX_BACKING_SCALE))
+            throw new IllegalArgumentException("backing scale must be between 1 and " + MAX_BACKING_SCALE);
+        requestedBackingScale = scale;
+        init();
+    }
+
+    /**
+     * Returns the backing scale in effect, that is, the number of image pixels per
+     * canvas pixel in each direction.
+     *
+     * @return the backing scale, between 1 and 4
+     */
+    public static int getBackingScale() {
+        return backingScale;
+    }
+
+    // the scale of the default screen, rounded up; 1 if there is no screen
+    private static int screenScale() {
+        if (GraphicsEnvironment.isHeadless()) return 1;
+        double scale = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                                          .getDefaultConfiguration().getDefaultTransform().getScaleX();
+        return Math.max(1, Math.min(MAX_BACKING_SCALE, (int) Math.ceil(scale - 1e-9)));
+    }
+
     // init
     private static void init() {
         if (frame != null) frame.setVisible(false);
         frame = new JFrame();
-        offscreenImage = new BufferedImage(2*width, 2*height, BufferedImage.TYPE_INT_ARGB);
-        onscreenImage  = new BufferedImage(2*width, 2*height, BufferedImage.TYPE_INT_ARGB);
+        backingScale = requestedBackingScale == AUTO_BACKING_SCALE ? screenScale() : requestedBackingScale;
+        offscreenImage = new BufferedImage(backingScale*width, backingScale*height, BufferedImage.TYPE_INT_ARGB);
+        onscreenImage  = new BufferedImage(backingScale*width, backingScale*height, BufferedImage.TYPE_INT_ARGB);
         offscreen = offscreenImage.createGraphics();
         onscreen  = onscreenImage.createGraphics();
-        offscreen.scale(2.0, 2.0);  // since we made it 2x as big
+        offscreen.scale(backingScale, backingScale);  // since we made it backingScale times as big
+        rasterPixels = null;
+        dirtyX0 = dirtyY0 = Integer.MAX_VALUE;
+        dirtyX1 = dirtyY1 = Integer.MIN_VALUE;
 
         setXscale();
         setYscale();
         offscreen.setColor(DEFAULT_CLEAR_COLOR);
         offscreen.fillRect(0, 0, width, height);
+        penColor = null;    // the new graphics context must get the pen color even if it is unchanged
         setPenColor();
         setPenRadius();
         setFont();
@@ -694,7 +844,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         offscreen.addRenderingHints(hints);
 
         // frame stuff
-        RetinaImageIcon icon = new RetinaImageIcon(onscreenImage);
+        RetinaImageIcon icon = new RetinaImageIcon(onscreenImage, backingScale);
         JLabel draw = new JLabel(icon);
 
         draw.addMouseListener(std);
@@ -784,10 +934,9 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         validate(max, "max");
         double size = max - min;
         if (size == 0.0) throw new IllegalArgumentException("the min and max are the same");
-        synchronized (mouseLock) {
-            xmin = min - BORDER * size;
-            xmax = max + BORDER * size;
-        }
+        xmin = min - BORDER * size;
+        xmax = max + BORDER * size;
+        publishScale();
     }
 
     /**
@@ -803,10 +952,9 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         validate(max, "max");
         double size = max - min;
         if (size == 0.0) throw new IllegalArgumentException("the min and max are the same");
-        synchronized (mouseLock) {
-            ymin = min - BORDER * size;
-            ymax = max + BORDER * size;
-        }
+        ymin = min - BORDER * size;
+        ymax = max + BORDER * size;
+        publishScale();
     }
 
     /**
@@ -822,12 +970,11 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         validate(max, "max");
         double size = max - min;
         if (size == 0.0) throw new IllegalArgumentException("the min and max are the same");
-        synchronized (mouseLock) {
-            xmin = min - BORDER * size;
-            xmax = max + BORDER * size;
-            ymin = min - BORDER * size;
-            ymax = max + BORDER * size;
-        }
+        xmin = min - BORDER * size;
+        xmax = max + BORDER * size;
+        ymin = min - BORDER * size;
+        ymax = max + BORDER * size;
+        publishScale();
     }
 
     // helper functions that scale from user coordinates to screen coordinates and back
@@ -835,8 +982,19 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     private static double  scaleY(double y) { return height * (ymax - y) / (ymax - ymin); }
     private static double factorX(double w) { return w * width  / Math.abs(xmax - xmin);  }
     private static double factorY(double h) { return h * height / Math.abs(ymax - ymin);  }
-    private static double   userX(double x) { return xmin + x * (xmax - xmin) / width;    }
-    private static double   userY(double y) { return ymax - y * (ymax - ymin) / height;   }
+
+    // publish the current scale and canvas size to the event dispatch thread
+    private static void publishScale() {
+        mouseScale = new double[] { xmin, xmax, ymin, ymax, width, height };
+    }
+
+    // convert a mouse position from screen coordinates to user coordinates, using a
+    // single published scale so that a concurrent change is seen entirely or not at all
+    private static double[] userXY(double x, double y) {
+        double[] s = mouseScale;
+        return new double[] { s[0] + x * (s[1] - s[0]) / s[4],
+                              s[3] - y * (s[3] - s[2]) / s[5] };
+    }
 
 
     /**
@@ -857,6 +1015,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         offscreen.setColor(color);
         offscreen.fillRect(0, 0, width, height);
         offscreen.setColor(penColor);
+        dirty(0, 0, width, height);
         draw();
     }
 
@@ -930,10 +1089,26 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      */
     public static void setPenColor(Color color) {
         validateNotNull(color, "color");
+        if (color.equals(penColor)) return;
         penColor = color;
         offscreen.setColor(penColor);
     }
 
+    /**
+     * Sets the pen color to the specified color, packed into an {@code int}
+     * as in {@link Color#getRGB()}: alpha in bits 24-31, red in bits 16-23,
+     * green in bits 8-15, and blue in bits 0-7.
+     * Nothing is done (and no {@link Color} is created) if the pen already
+     * has that color, so it is cheap to call before drawing each object.
+     *
+     * @param argb the color to make the pen, for example {@code 0xFF0000FF} for opaque blue
+     */
+    public static void setPenColor(int argb) {
+        if (penColor.getRGB() == argb) return;
+        penColor = Paleta.color(argb);
+        offscreen.setColor(penColor);
+    }
+
     /**
      * Sets the pen color to the specified RGB color.
      *
@@ -998,6 +1173,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         validate(x1, "x1");
         validate(y1, "y1");
         offscreen.draw(new Line2D.Double(scaleX(x0), scaleY(y0), scaleX(x1), scaleY(y1)));
+        dirty(scaleX(x0), scaleY(y0), scaleX(x1), scaleY(y1));
         draw();
     }
 
@@ -1037,9 +1213,15 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         // double ws = factorX(2*r);
         // double hs = factorY(2*r);
         // if (ws <= 1 && hs <= 1) pixel(x, y);
-        if (scaledPenRadius <= 1) pixel(x, y);
+        if (rasterRendering) {
+            prepareRaster();
+            if (scaledPenRadius <= 1) rasterPixel(xs, ys, penColor.getRGB());
+            else rasterEllipse(xs, ys, scaledPenRadius/2, scaledPenRadius/2, penColor.getRGB());
+        }
+        else if (scaledPenRadius <= 1) pixel(x, y);
         else offscreen.fill(new Ellipse2D.Double(xs - scaledPenRadius/2, ys - scaledPenRadius/2,
                                                  scaledPenRadius, scaledPenRadius));
+        dirty(xs, ys, xs, ys);
         draw();
     }
 
@@ -1064,6 +1246,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double hs = factorY(2*radius);
         if (ws <= 1 && hs <= 1) pixel(x, y);
         else offscreen.draw(new Ellipse2D.Double(xs - ws/2, ys - hs/2, ws, hs));
+        dirty(xs - ws/2, ys - hs/2, xs + ws/2, ys + hs/2);
         draw();
     }
 
@@ -1086,8 +1269,15 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double ys = scaleY(y);
         double ws = factorX(2*radius);
         double hs = factorY(2*radius);
-        if (ws <= 1 && hs <= 1) pixel(x, y);
-        else offscreen.fill(new Ellipse2D.Double(xs - ws/2, ys - hs/2, ws, hs));
+        if (rasterRendering) {
+            prepareRaster();
+            if (ws <= 1 && hs <= 1) rasterPixel(xs, ys, penColor.getRGB());
+            else rasterEllipse(xs, ys, ws/2, hs/2, penColor.getRGB());
+        }
+        else if (ws <= 1 && hs <= 1) pixel(x, y);
+        else if (!circleSprites || !stampCircle(xs, ys, ws, hs, penColor.getRGB()))
+            offscreen.fill(new Ellipse2D.Double(xs - ws/2, ys - hs/2, ws, hs));
+        dirty(xs - ws/2, ys - hs/2, xs + ws/2, ys + hs/2);
         draw();
     }
 
@@ -1118,6 +1308,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double hs = factorY(2*semiMinorAxis);
         if (ws <= 1 && hs <= 1) pixel(x, y);
         else offscreen.draw(new Ellipse2D.Double(xs - ws/2, ys - hs/2, ws, hs));
+        dirty(xs - ws/2, ys - hs/2, xs + ws/2, ys + hs/2);
         draw();
     }
 
@@ -1147,6 +1338,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double hs = factorY(2*semiMinorAxis);
         if (ws <= 1 && hs <= 1) pixel(x, y);
         else offscreen.fill(new Ellipse2D.Double(xs - ws/2, ys - hs/2, ws, hs));
+        dirty(xs - ws/2, ys - hs/2, xs + ws/2, ys + hs/2);
         draw();
     }
 
@@ -1179,6 +1371,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double hs = factorY(2*radius);
         if (ws <= 1 && hs <= 1) pixel(x, y);
         else offscreen.draw(new Arc2D.Double(xs - ws/2, ys - hs/2, ws, hs, angle1, angle2 - angle1, Arc2D.OPEN));
+        dirty(xs - ws/2, ys - hs/2, xs + ws/2, ys + hs/2);
         draw();
     }
 
@@ -1203,6 +1396,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double hs = factorY(2*halfLength);
         if (ws <= 1 && hs <= 1) pixel(x, y);
         else offscreen.draw(new Rectangle2D.Double(xs - ws/2, ys - hs/2, ws, hs));
+        dirty(xs - ws/2, ys - hs/2, xs + ws/2, ys + hs/2);
         draw();
     }
 
@@ -1227,6 +1421,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double hs = factorY(2*halfLength);
         if (ws <= 1 && hs <= 1) pixel(x, y);
         else offscreen.fill(new Rectangle2D.Double(xs - ws/2, ys - hs/2, ws, hs));
+        dirty(xs - ws/2, ys - hs/2, xs + ws/2, ys + hs/2);
         draw();
     }
 
@@ -1255,6 +1450,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double hs = factorY(2*halfHeight);
         if (ws <= 1 && hs <= 1) pixel(x, y);
         else offscreen.draw(new Rectangle2D.Double(xs - ws/2, ys - hs/2, ws, hs));
+        dirty(xs - ws/2, ys - hs/2, xs + ws/2, ys + hs/2);
         draw();
     }
 
@@ -1280,8 +1476,14 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double ys = scaleY(y);
         double ws = factorX(2*halfWidth);
         double hs = factorY(2*halfHeight);
-        if (ws <= 1 && hs <= 1) pixel(x, y);
+        if (rasterRendering) {
+            prepareRaster();
+            if (ws <= 1 && hs <= 1) rasterPixel(xs, ys, penColor.getRGB());
+            else rasterRectangle(xs - ws/2, ys - hs/2, xs + ws/2, ys + hs/2, penColor.getRGB(), rasterAntialiasing);
+        }
+        else if (ws <= 1 && hs <= 1) pixel(x, y);
         else offscreen.fill(new Rectangle2D.Double(xs - ws/2, ys - hs/2, ws, hs));
+        dirty(xs - ws/2, ys - hs/2, xs + ws/2, ys + hs/2);
         draw();
     }
 
@@ -1317,6 +1519,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
             path.lineTo((float) scaleX(x[i]), (float) scaleY(y[i]));
         path.closePath();
         offscreen.draw(path);
+        dirty(path.getBounds2D());
         draw();
     }
 
@@ -1351,98 +1554,717 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
             path.lineTo((float) scaleX(x[i]), (float) scaleY(y[i]));
         path.closePath();
         offscreen.fill(path);
+        dirty(path.getBounds2D());
         draw();
     }
 
 
    /***************************************************************************
-    *  Drawing images.
+    *  Drawing in batches.
     ***************************************************************************/
-    // get an image from the given filename
-    private static Image getImage(String filename) {
-        if (filename == null) throw new IllegalArgumentException();
 
-        // to read from file
-        ImageIcon icon = new ImageIcon(filename);
+    // shapes reused by every batch instead of allocating one per primitive
+    private static final Line2D.Double batchLine = new Line2D.Double();
+    private static final Ellipse2D.Double batchEllipse = new Ellipse2D.Double();
+    private static final Rectangle2D.Double batchRectangle = new Rectangle2D.Double();
 
-        // try to read from URL
-        if ((icon == null) || (icon.getImageLoadStatus() != MediaTracker.COMPLETE)) {
-            try {
-                URL url = new URL(filename);
-                icon = new ImageIcon(url);
+    /**
+     * Draws the first {@code n} line segments given by the specified arrays,
+     * from ({@code x0[i]}, {@code y0[i]}) to ({@code x1[i]}, {@code y1[i]}).
+     * This is equivalent to calling {@link #line(double, double, double, double)}
+     * {@code n} times, but much faster.
+     *
+     * @param  x0 the <em>x</em>-coordinates of one endpoint of each segment
+     * @param  y0 the <em>y</em>-coordinates of one endpoint of each segment
+     * @param  x1 the <em>x</em>-coordinates of the other endpoint of each segment
+     * @param  y1 the <em>y</em>-coordinates of the other endpoint of each segment
+     * @param  argb the color of each segment as packed ARGB values,
+     *         or {@code null} to draw all of them with the pen color
+     * @param  n the number of segments to draw
+     * @throws IllegalArgumentException if any coordinate array is {@code null}
+     * @throws IllegalArgumentException if {@code n} is negative or an array has fewer than {@code n} elements
+     * @throws IllegalArgumentException if any of the first {@code n} coordinates is either NaN or infinite
+     */
+    public static void lines(double[] x0, double[] y0, double[] x1, double[] y1, int[] argb, int n) {
+        validateBatch(x0, n, "x0");
+        validateBatch(y0, n, "y0");
+        validateBatch(x1, n, "x1");
+        validateBatch(y1, n, "y1");
+        validateColors(argb, n);
+
+        int color = penColor.getRGB();
+        for (int i = 0; i < n; i++) {
+            if (argb != null && argb[i] != color) {
+                color = argb[i];
+                offscreen.setColor(Paleta.color(color));
             }
-            catch (MalformedURLException e) {
-                /* not a url */
+            batchLine.setLine(scaleX(x0[i]), scaleY(y0[i]), scaleX(x1[i]), scaleY(y1[i]));
+            offscreen.draw(batchLine);
+        }
+        if (argb != null) offscreen.setColor(penColor);
+        dirtyBatch(x0, y0, null, null, n);
+        dirtyBatch(x1, y1, null, null, n);
+        draw();
+    }
+
+    /**
+     * Draws the first {@code n} points given by the specified arrays, centered
+     * at ({@code x[i]}, {@code y[i]}).
+     * This is equivalent to calling {@link #point(double, double)}
+     * {@code n} times, but much faster.
+     *
+     * @param  x the <em>x</em>-coordinates of the points
+     * @param  y the <em>y</em>-coordinates of the points
+     * @param  argb the color of each point as packed ARGB values,
+     *         or {@code null} to draw all of them with the pen color
+     * @param  n the number of points to draw
+     * @throws IllegalArgumentException if {@code x} or {@code y} is {@code null}
+     * @throws IllegalArgumentException if {@code n} is negative or an array has fewer than {@code n} elements
+     * @throws IllegalArgumentException if any of the first {@code n} coordinates is either NaN or infinite
+     */
+    public static void points(double[] x, double[] y, int[] argb, int n) {
+        validateBatch(x, n, "x");
+        validateBatch(y, n, "y");
+        validateColors(argb, n);
+
+        float scaledPenRadius = (float) (penRadius * DEFAULT_SIZE);
+        if (rasterRendering) {
+            prepareRaster();
+            int pen = penColor.getRGB();
+            for (int i = 0; i < n; i++) {
+                double xs = scaleX(x[i]);
+                double ys = scaleY(y[i]);
+                int color = argb == null ? pen : argb[i];
+                if (scaledPenRadius <= 1) rasterPixel(xs, ys, color);
+                else rasterEllipse(xs, ys, scaledPenRadius/2, scaledPenRadius/2, color);
             }
+            dirtyBatch(x, y, null, null, n);
+            draw();
+            return;
         }
 
-        // in case file is inside a .jar (classpath relative to StdDraw)
-        if ((icon == null) || (icon.getImageLoadStatus() != MediaTracker.COMPLETE)) {
-            URL url = StdDraw.class.getResource(filename);
-            if (url != null)
-                icon = new ImageIcon(url);
+        int color = penColor.getRGB();
+        for (int i = 0; i < n; i++) {
+            if (argb != null && argb[i] != color) {
+                color = argb[i];
+                offscreen.setColor(Paleta.color(color));
+            }
+            double xs = scaleX(x[i]);
+            double ys = scaleY(y[i]);
+            if (scaledPenRadius <= 1) offscreen.fillRect((int) Math.round(xs), (int) Math.round(ys), 1, 1);
+            else {
+                batchEllipse.setFrame(xs - scaledPenRadius/2, ys - scaledPenRadius/2, scaledPenRadius, scaledPenRadius);
+                offscreen.fill(batchEllipse);
+            }
         }
+        if (argb != null) offscreen.setColor(penColor);
+        dirtyBatch(x, y, null, null, n);
+        draw();
+    }
 
-        // in case file is inside a .jar (classpath relative to root of jar)
-        if ((icon == null) || (icon.getImageLoadStatus() != MediaTracker.COMPLETE)) {
-            URL url = StdDraw.class.getResource("/" + filename);
-            if (url == null) throw new IllegalArgumentException("image " + filename + " not found");
-            icon = new ImageIcon(url);
+    /**
+     * Draws the first {@code n} filled circles given by the specified arrays,
+     * centered at ({@code x[i]}, {@code y[i]}) and of radius {@code radius[i]}.
+     * This is equivalent to calling {@link #filledCircle(double, double, double)}
+     * {@code n} times, but much faster. The pen color is changed only between
+     * consecutive circles of different colors, so it pays to store circles of
+     * the same color next to each other.
+     *
+     * @param  x the <em>x</em>-coordinates of the centers
+     * @param  y the <em>y</em>-coordinates of the centers
+     * @param  radius the radii of the circles
+     * @param  argb the color of each circle as packed ARGB values,
+     *         or {@code null} to draw all of them with the pen color
+     * @param  n the number of circles to draw
+     * @throws IllegalArgumentException if {@code x}, {@code y} or {@code radius} is {@code null}
+     * @throws IllegalArgumentException if {@code n} is negative or an array has fewer than {@code n} elements
+     * @throws IllegalArgumentException if any of the first {@code n} values is either NaN or infinite
+     * @throws IllegalArgumentException if any of the first {@code n} radii is negative
+     */
+    public static void filledCircles(double[] x, double[] y, double[] radius, int[] argb, int n) {
+        validateBatch(x, n, "x");
+        validateBatch(y, n, "y");
+        validateBatch(radius, n, "radius");
+        for (int i = 0; i < n; i++) validateNonnegative(radius[i], "radius[" + i + "]");
+        validateColors(argb, n);
+
+        if (rasterRendering) {
+            prepareRaster();
+            int pen = penColor.getRGB();
+            for (int i = 0; i < n; i++) {
+                double xs = scaleX(x[i]);
+                double ys = scaleY(y[i]);
+                double ws = factorX(2*radius[i]);
+                double hs = factorY(2*radius[i]);
+                int color = argb == null ? pen : argb[i];
+                if (ws <= 1 && hs <= 1) rasterPixel(xs, ys, color);
+                else rasterEllipse(xs, ys, ws/2, hs/2, color);
+            }
+            dirtyBatch(x, y, radius, radius, n);
+            draw();
+            return;
+        }
+
+        int color = penColor.getRGB();
+        for (int i = 0; i < n; i++) {
+            if (argb != null && argb[i] != color) {
+                color = argb[i];
+                offscreen.setColor(Paleta.color(color));
+            }
+            double xs = scaleX(x[i]);
+            double ys = scaleY(y[i]);
+            double ws = factorX(2*radius[i]);
+            double hs = factorY(2*radius[i]);
+            if (ws <= 1 && hs <= 1) offscreen.fillRect((int) Math.round(xs), (int) Math.round(ys), 1, 1);
+            else if (!circleSprites || !stampCircle(xs, ys, ws, hs, color)) {
+                batchEllipse.setFrame(xs - ws/2, ys - hs/2, ws, hs);
+                offscreen.fill(batchEllipse);
+            }
+        }
+        if (argb != null) offscreen.setColor(penColor);
+        dirtyBatch(x, y, radius, radius, n);
+        draw();
+    }
+
+    /**
+     * Draws the first {@code n} filled rectangles given by the specified arrays,
+     * centered at ({@code x[i]}, {@code y[i]}) and of half-width {@code halfWidth[i]}
+     * and half-height {@code halfHeight[i]}.
+     * This is equivalent to calling {@link #filledRectangle(double, double, double, double)}
+     * {@code n} times, but much faster.
+     *
+     * @param  x the <em>x</em>-coordinates of the centers
+     * @param  y the <em>y</em>-coordinates of the centers
+     * @param  halfWidth one half the width of each rectangle
+     * @param  halfHeight one half the height of each rectangle
+     * @param  argb the color of each rectangle as packed ARGB values,
+     *         or {@code null} to draw all of them with the pen color
+     * @param  n the number of rectangles to draw
+     * @throws IllegalArgumentException if any of the coordinate or size arrays is {@code null}
+     * @throws IllegalArgumentException if {@code n} is negative or an array has fewer than {@code n} elements
+     * @throws IllegalArgumentException if any of the first {@code n} values is either NaN or infinite
+     * @throws IllegalArgumentException if any of the first {@code n} half-widths or half-heights is negative
+     */
+    public static void filledRectangles(double[] x, double[] y, double[] halfWidth, double[] halfHeight,
+                                        int[] argb, int n) {
+        validateBatch(x, n, "x");
+        validateBatch(y, n, "y");
+        validateBatch(halfWidth, n, "halfWidth");
+        validateBatch(halfHeight, n, "halfHeight");
+        for (int i = 0; i < n; i++) {
+            validateNonnegative(halfWidth[i], "halfWidth[" + i + "]");
+            validateNonnegative(halfHeight[i], "halfHeight[" + i + "]");
+        }
+        validateColors(argb, n);
+
+        if (rasterRendering) {
+            prepareRaster();
+            int pen = penColor.getRGB();
+            for (int i = 0; i < n; i++) {
+                double xs = scaleX(x[i]);
+                double ys = scaleY(y[i]);
+                double ws = factorX(2*halfWidth[i]);
+                double hs = factorY(2*halfHeight[i]);
+                int color = argb == null ? pen : argb[i];
+                if (ws <= 1 && hs <= 1) rasterPixel(xs, ys, color);
+                else rasterRectangle(xs - ws/2, ys - hs/2, xs + ws/2, ys + hs/2, color, rasterAntialiasing);
+            }
+            dirtyBatch(x, y, halfWidth, halfHeight, n);
+            draw();
+            return;
+        }
+
+        int color = penColor.getRGB();
+        for (int i = 0; i < n; i++) {
+            if (argb != null && argb[i] != color) {
+                color = argb[i];
+                offscreen.setColor(Paleta.color(color));
+            }
+            double xs = scaleX(x[i]);
+            double ys = scaleY(y[i]);
+            double ws = factorX(2*halfWidth[i]);
+            double hs = factorY(2*halfHeight[i]);
+            if (ws <= 1 && hs <= 1) offscreen.fillRect((int) Math.round(xs), (int) Math.round(ys), 1, 1);
+            else {
+                batchRectangle.setRect(xs - ws/2, ys - hs/2, ws, hs);
+                offscreen.fill(batchRectangle);
+            }
+        }
+        if (argb != null) offscreen.setColor(penColor);
+        dirtyBatch(x, y, halfWidth, halfHeight, n);
+        draw();
+    }
+
+    // throw an IllegalArgumentException unless the first n elements of a exist and are finite
+    private static void validateBatch(double[] a, int n, String name) {
+        validateNotNull(a, name);
+        if (n < 0) throw new IllegalArgumentException("n must be nonnegative");
+        if (a.length < n) throw new IllegalArgumentException(name + " has fewer than " + n + " elements");
+        for (int i = 0; i < n; i++)
+            if (!Double.isFinite(a[i])) validate(a[i], name + "[" + i + "]");
+    }
+
+    // throw an IllegalArgumentException if argb is not null and has fewer than n elements
+    private static void validateColors(int[] argb, int n) {
+        if (argb != null && argb.length < n)
+            throw new IllegalArgumentException("argb has fewer than " + n + " elements");
+    }
+
+
+   /***************************************************************************
+    *  Circle sprites.
+    ***************************************************************************/
+
+    /**
+     * Default capacity, in bytes, of the cache of circle sprites.
+     */
+    public static final long DEFAULT_SPRITE_CACHE_SIZE = 4L << 20;
+
+    // sprite sizes are quantized to 1/SPRITE_SUBPIXELS of a canvas pixel
+    private static final int SPRITE_SUBPIXELS = 4;
+    // larger circles are filled as usual; 11 bits per quantized size in the key
+    private static final int MAX_SPRITE_DIAMETER = 256;
+
+    // sprites by (quantized width, quantized height, ARGB), least recently used first
+    private static final LinkedHashMap<Long, BufferedImage> spriteCache =
+        new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true);
+    private static final AffineTransform spriteTransform = new AffineTransform();
+    private static boolean circleSprites;
+    private static long spriteCacheCapacity = DEFAULT_SPRITE_CACHE_SIZE;
+    private static long spriteCacheBytes;
+    // the sprite stamped last, which consecutive circles of the same size and color reuse without a lookup
+    private static long lastSpriteKey = -1;
+    private static BufferedImage lastSprite;
+
+    /**
+     * Enables circle sprites. All subsequent calls to {@code filledCircle()} and
+     * {@code filledCircles()} draw each distinct combination of size and color
+     * once into a small image, and then copy that image to the canvas for every
+     * circle of the same size and color, which is much faster than filling each
+     * circle when an animation draws many circles of a few sizes and colors.
+     * The price is that each circle may be drawn up to half a pixel away from its
+     * exact position and its size is rounded to a quarter of a pixel.
+     */
+    public static void enableCircleSprites() {
+        circleSprites = true;
+    }
+
+    /**
+     * Disables circle sprites and empties the sprite cache. This is the default.
+     */
+    public static void disableCircleSprites() {
+        circleSprites = false;
+        spriteCache.clear();
+        spriteCacheBytes = 0;
+        lastSpriteKey = -1;
+        lastSprite = null;
+    }
+
+    /**
+     * Sets the capacity of the circle sprite cache. When the total size of the
+     * sprites exceeds the capacity, the least recently drawn sprites are evicted.
+     *
+     * @param  bytes the capacity of the cache, in bytes (4 bytes per pixel)
+     * @throws IllegalArgumentException if {@code bytes} is negative
+     */
+    public static void setSpriteCacheSize(long bytes) {
+        if (bytes < 0) throw new IllegalArgumentException("sprite cache size must be nonnegative");
+        spriteCacheCapacity = bytes;
+        evictSprites();
+    }
+
+    // copy the sprite of a filled ellipse of size ws-by-hs centered at (xs, ys), in canvas pixels;
+    // false if the ellipse is too large for a sprite and must be filled instead
+    private static boolean stampCircle(double xs, double ys, double ws, double hs, int argb) {
+        int scale = backingScale;
+        long qw = Math.round(ws * scale * SPRITE_SUBPIXELS);
+        long qh = Math.round(hs * scale * SPRITE_SUBPIXELS);
+        if (qw > MAX_SPRITE_DIAMETER * SPRITE_SUBPIXELS || qh > MAX_SPRITE_DIAMETER * SPRITE_SUBPIXELS) return false;
+
+        long key = qw << 43 | qh << 32 | (argb & 0xFFFFFFFFL);
+        BufferedImage sprite = lastSprite;
+        if (key != lastSpriteKey) {
+            sprite = spriteCache.get(key);
+            if (sprite == null) sprite = newSprite(key, (double) qw / SPRITE_SUBPIXELS, (double) qh / SPRITE_SUBPIXELS, argb);
+            lastSpriteKey = key;
+            lastSprite = sprite;
+        }
+
+        // an integer translation in device pixels, which Java 2D draws as a plain copy
+        double xd = Math.round(xs * scale - sprite.getWidth()/2.0);
+        double yd = Math.round(ys * scale - sprite.getHeight()/2.0);
+        spriteTransform.setToScale(1.0/scale, 1.0/scale);
+        spriteTransform.translate(xd, yd);
+        offscreen.drawImage(sprite, spriteTransform, null);
+        return true;
+    }
+
+    // rasterize a filled ellipse of size wd-by-hd device pixels, centered in a transparent image
+    private static BufferedImage newSprite(long key, double wd, double hd, int argb) {
+        BufferedImage sprite = new BufferedImage((int) Math.ceil(wd) + 2, (int) Math.ceil(hd) + 2,
+                                                 BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = sprite.createGraphics();
+        g.setRenderingHints(offscreen.getRenderingHints());
+        g.setColor(new Color(argb, true));
+        g.fill(new Ellipse2D.Double((sprite.getWidth() - wd)/2, (sprite.getHeight() - hd)/2, wd, hd));
+        g.dispose();
+
+        long bytes = 4L * sprite.getWidth() * sprite.getHeight();
+        if (bytes <= spriteCacheCapacity) {
+            spriteCache.put(key, sprite);
+            spriteCacheBytes += bytes;
+            evictSprites();
+        }
+        return sprite;
+    }
+
+    // remove least recently used sprites until the cache fits its capacity
+    private static void evictSprites() {
+        Iterator<BufferedImage> it = spriteCache.values().iterator();
+        while (spriteCacheBytes > spriteCacheCapacity && it.hasNext()) {
+            BufferedImage sprite = it.next();
+            spriteCacheBytes -= 4L * sprite.getWidth() * sprite.getHeight();
+            it.remove();
+        }
+    }
+
+
+   /***************************************************************************
+    *  Direct rasterization.
+    ***************************************************************************/
+
+    private static boolean rasterRendering, rasterAntialiasing;
+    // pixels of offscreenImage, fetched on first use because that stops Java 2D from caching the image
+    private static int[] rasterPixels;
+    private static int rasterWidth, rasterHeight;
+
+    /**
+     * Enables direct rasterization. All subsequent calls to {@code filledCircle()},
+     * {@code filledRectangle()}, {@code point()} and their batch versions write the
+     * pixels of the canvas directly instead of going through Java 2D, which is much
+     * faster for scenes with many small shapes. Every other drawing method is
+     * unaffected, so you can enable and disable direct rasterization for the
+     * part of each frame that draws the particles.
+     *
+     * @param antialiasing {@code true} to blend the pixels on the edge of each
+     *        shape according to how much of them it covers; {@code false} to fill
+     *        only the pixels whose centers are inside the shape
+     */
+    public static void enableRasterRendering(boolean antialiasing) {
+        rasterRendering = true;
+        rasterAntialiasing = antialiasing;
+    }
+
+    /**
+     * Disables direct rasterization, so that all shapes are drawn with Java 2D.
+     * This is the default.
+     */
+    public static void disableRasterRendering() {
+        rasterRendering = false;
+    }
+
+    // get the pixels of the offscreen canvas before rasterizing
+    private static void prepareRaster() {
+        if (rasterPixels == null) {
+            rasterPixels = ((DataBufferInt) offscreenImage.getRaster().getDataBuffer()).getData();
+            rasterWidth = offscreenImage.getWidth();
+            rasterHeight = offscreenImage.getHeight();
         }
+    }
 
-        return icon.getImage();
+    // rasterize the filled ellipse centered at (xs, ys) with semiaxes rx and ry, in canvas pixels
+    private static void rasterEllipse(double xs, double ys, double rx, double ry, int argb) {
+        double cx = xs * backingScale, cy = ys * backingScale;
+        rx *= backingScale;
+        ry *= backingScale;
+        int top = Math.max(0, (int) Math.floor(cy - ry - 0.5));
+        int bottom = Math.min(rasterHeight - 1, (int) Math.ceil(cy + ry + 0.5));
+
+        if (!rasterAntialiasing) {
+            for (int py = top; py <= bottom; py++) {
+                double dy = (py + 0.5 - cy) / ry;
+                if (dy*dy >= 1) continue;
+                double hw = rx * Math.sqrt(1 - dy*dy);
+                rasterSpan(py, (int) Math.ceil(cx - hw - 0.5), (int) Math.floor(cx + hw - 0.5) + 1, argb, 256);
+            }
+            return;
+        }
+
+        // pixels within half a pixel of the edge are blended by their distance to it,
+        // measured in normalized units of k pixels
+        double k = (rx + ry) / 2;
+        double outer = 1 + 0.5/k, inner = 1 - 0.5/k;
+        for (int py = top; py <= bottom; py++) {
+            double dy = (py + 0.5 - cy) / ry;
+            if (dy*dy >= outer*outer) continue;
+            double hwOut = rx * Math.sqrt(outer*outer - dy*dy);
+            int xa = (int) Math.ceil(cx - hwOut - 0.5);
+            int xb = (int) Math.floor(cx + hwOut - 0.5);
+            int ia = xb + 1, ib = xb;
+            if (inner > 0 && dy*dy < inner*inner) {
+                double hwIn = rx * Math.sqrt(inner*inner - dy*dy);
+                ia = (int) Math.ceil(cx - hwIn - 0.5);
+                ib = (int) Math.floor(cx + hwIn - 0.5);
+                rasterSpan(py, ia, ib + 1, argb, 256);
+            }
+            for (int px = xa; px <= xb; px++) {
+                if (px == ia) px = ib + 1;
+                if (px > xb) break;
+                double dx = (px + 0.5 - cx) / rx;
+                double coverage = (1 - Math.sqrt(dx*dx + dy*dy)) * k + 0.5;
+                if (coverage > 0) rasterSpan(py, px, px + 1, argb, (int) (Math.min(coverage, 1) * 256));
+            }
+        }
+    }
+
+    // rasterize the filled rectangle from (x0, y0) to (x1, y1), in canvas pixels,
+    // with or without antialiased edges
+    private static void rasterRectangle(double x0, double y0, double x1, double y1, int argb,
+                                        boolean antialiasing) {
+        x0 *= backingScale;
+        y0 *= backingScale;
+        x1 *= backingScale;
+        y1 *= backingScale;
+
+        if (!antialiasing) {
+            int xa = (int) Math.ceil(x0 - 0.5), xb = (int) Math.ceil(x1 - 0.5);
+            int top = Math.max(0, (int) Math.ceil(y0 - 0.5));
+            int bottom = Math.min(rasterHeight, (int) Math.ceil(y1 - 0.5));
+            for (int py = top; py < bottom; py++)
+                rasterSpan(py, xa, xb, argb, 256);
+            return;
+        }
+
+        // fully covered columns from ia to ib, partially covered ones on either side
+        int xa = (int) Math.floor(x0), xb = (int) Math.ceil(x1);
+        int ia = (int) Math.ceil(x0), ib = (int) Math.floor(x1);
+        int top = Math.max(0, (int) Math.floor(y0));
+        int bottom = Math.min(rasterHeight, (int) Math.ceil(y1));
+        for (int py = top; py < bottom; py++) {
+            double cy = Math.min(py + 1, y1) - Math.max(py, y0);
+            if (ia < ib) {
+                rasterSpan(py, ia, ib, argb, (int) (cy * 256));
+                if (xa < ia) rasterSpan(py, xa, ia, argb, (int) (cy * (ia - x0) * 256));
+                if (ib < xb) rasterSpan(py, ib, xb, argb, (int) (cy * (x1 - ib) * 256));
+            }
+            else {
+                for (int px = xa; px < xb; px++)
+                    rasterSpan(py, px, px + 1, argb, (int) (cy * (Math.min(px + 1, x1) - Math.max(px, x0)) * 256));
+            }
+        }
     }
 
+    // rasterize one canvas pixel at (xs, ys), as pixel() does
+    private static void rasterPixel(double xs, double ys, int argb) {
+        double x0 = Math.round(xs), y0 = Math.round(ys);
+        rasterRectangle(x0, y0, x0 + 1, y0 + 1, argb, false);
+    }
+
+    // blend argb, with its alpha scaled by coverage (0 to 256), into the pixels [from, to) of row py
+    private static void rasterSpan(int py, int from, int to, int argb, int coverage) {
+        if (py < 0 || py >= rasterHeight) return;
+        int row = py * rasterWidth;
+        from = row + Math.max(0, from);
+        to = row + Math.min(rasterWidth, to);
+        if (from >= to) return;
+        int alpha = ((argb >>> 24) * coverage) >> 8;
+        if (alpha >= 255) {
+            Arrays.fill(rasterPixels, from, to, argb | 0xFF000000);
+            return;
+        }
+        if (alpha <= 0) return;
+
+        // source over on non-premultiplied ARGB; the canvas is usually opaque
+        int sr = (argb >> 16) & 0xFF, sg = (argb >> 8) & 0xFF, sb = argb & 0xFF;
+        int inverse = 255 - alpha;
+        for (int i = from; i < to; i++) {
+            int dst = rasterPixels[i];
+            int da = dst >>> 24;
+            int dr = (dst >> 16) & 0xFF, dg = (dst >> 8) & 0xFF, db = dst & 0xFF;
+            if (da == 255) {
+                rasterPixels[i] = 0xFF000000
+                                | (sr * alpha + dr * inverse + 127) / 255 << 16
+                                | (sg * alpha + dg * inverse + 127) / 255 << 8
+                                | (sb * alpha + db * inverse + 127) / 255;
+            }
+            else {
+                int dw = da * inverse / 255;
+                int a = alpha + dw;
+                if (a == 0) continue;
+                rasterPixels[i] = a << 24
+                                | (sr * alpha + dr * dw) / a << 16
+                                | (sg * alpha + dg * dw) / a << 8
+                                | (sb * alpha + db * dw) / a;
+            }
+        }
+    }
+
+
    /***************************************************************************
-    * [Summer 2016] Should we update to use ImageIO instead of ImageIcon()?
-    *               Seems to have some issues loading images on some systems
-    *               and slows things down on other systems.
-    *               especially if you don't call ImageIO.setUseCache(false)
-    *               One advantage is that it returns a BufferedImage.
+    *  Drawing images.
     ***************************************************************************/
-/*
+    /**
+     * Default capacity, in bytes, of the cache of decoded images used by the {@code picture()} methods.
+     */
+    public static final long DEFAULT_IMAGE_CACHE_SIZE = 64L << 20;
+
+    // decoded images by filename, least recently used first; each costs 4 bytes per pixel
+    private static final LinkedHashMap<String, BufferedImage> imageCache =
+        new LinkedHashMap<String, BufferedImage>(16, 0.75f, true);
+    private static long imageCacheCapacity = DEFAULT_IMAGE_CACHE_SIZE;
+    private static long imageCacheBytes;
+    private static long imageCacheHits, imageCacheMisses;
+
+    /**
+     * Sets the capacity of the image cache.
+     * Images drawn with the {@code picture()} methods are decoded once and kept in
+     * the cache until the total size of the cached images exceeds the capacity;
+     * then the least recently drawn images are evicted. An image larger than the
+     * capacity is decoded every time it is drawn. A capacity of 0 disables the cache.
+     *
+     * @param  bytes the capacity of the cache, in bytes (4 bytes per pixel)
+     * @throws IllegalArgumentException if {@code bytes} is negative
+     */
+    public static void setImageCacheSize(long bytes) {
+        if (bytes < 0) throw new IllegalArgumentException("image cache size must be nonnegative");
+        synchronized (imageCache) {
+            imageCacheCapacity = bytes;
+            evictImages();
+        }
+    }
+
+    /**
+     * Removes all the images from the image cache, so that the next call to
+     * {@code picture()} reads each file again. Call this method after changing
+     * an image file that has already been drawn.
+     */
+    public static void clearImageCache() {
+        synchronized (imageCache) {
+            imageCache.clear();
+            imageCacheBytes = 0;
+        }
+    }
+
+    /**
+     * Returns the number of images drawn from the image cache without decoding them.
+     *
+     * @return the number of cache hits
+     */
+    public static long imageCacheHits() {
+        synchronized (imageCache) {
+            return imageCacheHits;
+        }
+    }
+
+    /**
+     * Returns the number of images that had to be read and decoded because they were not in the image cache.
+     *
+     * @return the number of cache misses
+     */
+    public static long imageCacheMisses() {
+        synchronized (imageCache) {
+            return imageCacheMisses;
+        }
+    }
+
+    // get an image from the given filename, decoding it only if it is not cached
     private static BufferedImage getImage(String filename) {
         if (filename == null) throw new IllegalArgumentException();
+        synchronized (imageCache) {
+            BufferedImage image = imageCache.get(filename);
+            if (image != null) {
+                imageCacheHits++;
+                return image;
+            }
+            imageCacheMisses++;
+        }
+
+        BufferedImage image = toCanvasFormat(readImage(filename));
+        long bytes = 4L * image.getWidth() * image.getHeight();
+        synchronized (imageCache) {
+            if (bytes <= imageCacheCapacity) {
+                BufferedImage old = imageCache.put(filename, image);
+                if (old != null) imageCacheBytes -= 4L * old.getWidth() * old.getHeight();
+                imageCacheBytes += bytes;
+                evictImages();
+            }
+        }
+        return image;
+    }
+
+    // remove least recently used images until the cache fits its capacity
+    private static void evictImages() {
+        Iterator<BufferedImage> it = imageCache.values().iterator();
+        while (imageCacheBytes > imageCacheCapacity && it.hasNext()) {
+            BufferedImage image = it.next();
+            imageCacheBytes -= 4L * image.getWidth() * image.getHeight();
+            it.remove();
+        }
+    }
 
-        // from a file or URL
+    // read an image from a file, a URL or the classpath
+    private static BufferedImage readImage(String filename) {
+        // to read from file
+        File file = new File(filename);
+        if (file.isFile()) {
+            BufferedImage image = readImage(file, null);
+            if (image != null) return image;
+        }
+
+        // try to read from URL
         try {
             URL url = new URL(filename);
-            BufferedImage image = ImageIO.read(url);
-            return image;
-        } 
-        catch (IOException e) {
-            // ignore
+            BufferedImage image = readImage(null, url);
+            if (image != null) return image;
+        }
+        catch (MalformedURLException e) {
+            /* not a url */
         }
 
         // in case file is inside a .jar (classpath relative to StdDraw)
-        try {
-            URL url = StdDraw.class.getResource(filename);
-            BufferedImage image = ImageIO.read(url);
-            return image;
-        } 
-        catch (IOException e) {
-            // ignore
+        URL url = StdDraw.class.getResource(filename);
+        if (url != null) {
+            BufferedImage image = readImage(null, url);
+            if (image != null) return image;
         }
 
         // in case file is inside a .jar (classpath relative to root of jar)
+        url = StdDraw.class.getResource("/" + filename);
+        if (url != null) {
+            BufferedImage image = readImage(null, url);
+            if (image != null) return image;
+        }
+        throw new IllegalArgumentException("image " + filename + " not found");
+    }
+
+    // decode an image from either a file or a URL; null if it cannot be read
+    private static BufferedImage readImage(File file, URL url) {
         try {
-            URL url = StdDraw.class.getResource("/" + filename);
-            BufferedImage image = ImageIO.read(url);
-            return image;
-        } 
+            return file != null ? ImageIO.read(file) : ImageIO.read(url);
+        }
         catch (IOException e) {
-            // ignore
+            return null;
         }
-        throw new IllegalArgumentException("image " + filename + " not found");
     }
-*/
+
+    // convert a decoded image once to the format of the offscreen canvas,
+    // so that drawing it is a plain copy of pixels instead of a conversion
+    private static BufferedImage toCanvasFormat(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB) return image;
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = converted.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+
     /**
      * Draws the specified image centered at (<em>x</em>, <em>y</em>).
      * The supported image formats are JPEG, PNG, and GIF.
      * As an optimization, the picture is cached, so there is no performance
      * penalty for redrawing the same image multiple times (e.g., in an animation).
      * However, if you change the picture file after drawing it, subsequent
-     * calls will draw the original picture.
+     * calls will draw the original picture until you call {@link #clearImageCache()}.
      *
      * @param  x the center <em>x</em>-coordinate of the image
      * @param  y the center <em>y</em>-coordinate of the image
@@ -1455,17 +2277,14 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         validate(y, "y");
         validateNotNull(filename, "filename");
 
-        // BufferedImage image = getImage(filename);
-        Image image = getImage(filename);
+        BufferedImage image = getImage(filename);
         double xs = scaleX(x);
         double ys = scaleY(y);
-        // int ws = image.getWidth();    // can call only if image is a BufferedImage
-        // int hs = image.getHeight();
-        int ws = image.getWidth(null);
-        int hs = image.getHeight(null);
-        if (ws < 0 || hs < 0) throw new IllegalArgumentException("image " + filename + " is corrupt");
+        int ws = image.getWidth();
+        int hs = image.getHeight();
 
         offscreen.drawImage(image, (int) Math.round(xs - ws/2.0), (int) Math.round(ys - hs/2.0), null);
+        dirty(xs - ws/2.0, ys - hs/2.0, xs + ws/2.0, ys + hs/2.0);
         draw();
     }
 
@@ -1488,19 +2307,16 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         validate(degrees, "degrees");
         validateNotNull(filename, "filename");
 
-        // BufferedImage image = getImage(filename);
-        Image image = getImage(filename);
+        BufferedImage image = getImage(filename);
         double xs = scaleX(x);
         double ys = scaleY(y);
-        // int ws = image.getWidth();    // can call only if image is a BufferedImage
-        // int hs = image.getHeight();
-        int ws = image.getWidth(null);
-        int hs = image.getHeight(null);
-        if (ws < 0 || hs < 0) throw new IllegalArgumentException("image " + filename + " is corrupt");
+        int ws = image.getWidth();
+        int hs = image.getHeight();
 
-        offscreen.rotate(Math.toRadians(-degrees), xs, ys);
+        rotate(degrees, xs, ys);
         offscreen.drawImage(image, (int) Math.round(xs - ws/2.0), (int) Math.round(ys - hs/2.0), null);
-        offscreen.rotate(Math.toRadians(+degrees), xs, ys);
+        dirty(xs - ws/2.0, ys - hs/2.0, xs + ws/2.0, ys + hs/2.0);
+        unrotate();
 
         draw();
     }
@@ -1530,7 +2346,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         validateNonnegative(scaledWidth, "scaled width");
         validateNonnegative(scaledHeight, "scaled height");
 
-        Image image = getImage(filename);
+        BufferedImage image = getImage(filename);
         double xs = scaleX(x);
         double ys = scaleY(y);
         double ws = factorX(scaledWidth);
@@ -1543,6 +2359,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
                                        (int) Math.round(ws),
                                        (int) Math.round(hs), null);
         }
+        dirty(xs - ws/2, ys - hs/2, xs + ws/2, ys + hs/2);
         draw();
     }
 
@@ -1572,7 +2389,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         validateNonnegative(scaledWidth, "scaled width");
         validateNonnegative(scaledHeight, "scaled height");
 
-        Image image = getImage(filename);
+        BufferedImage image = getImage(filename);
         double xs = scaleX(x);
         double ys = scaleY(y);
         double ws = factorX(scaledWidth);
@@ -1580,12 +2397,13 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         if (ws < 0 || hs < 0) throw new IllegalArgumentException("image " + filename + " is corrupt");
         if (ws <= 1 && hs <= 1) pixel(x, y);
 
-        offscreen.rotate(Math.toRadians(-degrees), xs, ys);
+        rotate(degrees, xs, ys);
         offscreen.drawImage(image, (int) Math.round(xs - ws/2.0),
                                    (int) Math.round(ys - hs/2.0),
                                    (int) Math.round(ws),
                                    (int) Math.round(hs), null);
-        offscreen.rotate(Math.toRadians(+degrees), xs, ys);
+        dirty(xs - ws/2, ys - hs/2, xs + ws/2, ys + hs/2);
+        unrotate();
 
         draw();
     }
@@ -1615,6 +2433,8 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         int ws = metrics.stringWidth(text);
         int hs = metrics.getDescent();
         offscreen.drawString(text, (float) (xs - ws/2.0), (float) (ys + hs));
+        dirty(xs - ws/2.0 - metrics.getHeight(), ys + hs - metrics.getAscent(),
+              xs + ws/2.0 + metrics.getHeight(), ys + hs + metrics.getDescent());
         draw();
     }
 
@@ -1636,9 +2456,9 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 
         double xs = scaleX(x);
         double ys = scaleY(y);
-        offscreen.rotate(Math.toRadians(-degrees), xs, ys);
+        rotate(degrees, xs, ys);
         text(x, y, text);
-        offscreen.rotate(Math.toRadians(+degrees), xs, ys);
+        unrotate();
     }
 
 
@@ -1661,6 +2481,8 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double ys = scaleY(y);
         int hs = metrics.getDescent();
         offscreen.drawString(text, (float) xs, (float) (ys + hs));
+        dirty(xs - metrics.getHeight(), ys + hs - metrics.getAscent(),
+              xs + metrics.stringWidth(text) + metrics.getHeight(), ys + hs + metrics.getDescent());
         draw();
     }
 
@@ -1685,6 +2507,8 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         int ws = metrics.stringWidth(text);
         int hs = metrics.getDescent();
         offscreen.drawString(text, (float) (xs - ws), (float) (ys + hs));
+        dirty(xs - ws - metrics.getHeight(), ys + hs - metrics.getAscent(),
+              xs + metrics.getHeight(), ys + hs + metrics.getDescent());
         draw();
     }
 
@@ -1722,8 +2546,23 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      * this method unless double buffering is enabled.
      */
     public static void show() {
-        onscreen.drawImage(offscreenImage, 0, 0, null);
-        frame.repaint();
+        if (dirtyX0 >= dirtyX1 || dirtyY0 >= dirtyY1) return;
+        int w = onscreenImage.getWidth();
+        int h = onscreenImage.getHeight();
+        if ((double) (dirtyX1 - dirtyX0) * (dirtyY1 - dirtyY0) >= FULL_FRAME_FRACTION * w * h) {
+            onscreen.drawImage(offscreenImage, 0, 0, null);
+            frame.repaint();
+        }
+        else {
+            onscreen.drawImage(offscreenImage, dirtyX0, dirtyY0, dirtyX1, dirtyY1,
+                                               dirtyX0, dirtyY0, dirtyX1, dirtyY1, null);
+            // the window shows the onscreen image scaled down to the canvas size
+            int x0 = dirtyX0 * width / w, y0 = dirtyY0 * height / h;
+            int x1 = (dirtyX1 * width + w - 1) / w, y1 = (dirtyY1 * height + h - 1) / h;
+            frame.getContentPane().repaint(x0, y0, x1 - x0, y1 - y0);
+        }
+        dirtyX0 = dirtyY0 = Integer.MAX_VALUE;
+        dirtyX1 = dirtyY1 = Integer.MIN_VALUE;
     }
 
     // draw onscreen if defer is false
@@ -1731,6 +2570,70 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         if (!defer) show();
     }
 
+    // rotate offscreen by the given angle (in degrees, counterclockwise) around (xs, ys),
+    // remembering the rotation so that dirty() can account for it
+    private static void rotate(double degrees, double xs, double ys) {
+        rotation = Math.toRadians(-degrees);
+        rotationX = xs;
+        rotationY = ys;
+        offscreen.rotate(rotation, xs, ys);
+    }
+
+    // undo the rotation applied by rotate()
+    private static void unrotate() {
+        offscreen.rotate(-rotation, rotationX, rotationY);
+        rotation = 0;
+    }
+
+    // mark as changed the rectangle with corners (x0, y0) and (x1, y1), in canvas pixels,
+    // widened by the pen radius and a pixel of antialiasing
+    private static void dirty(double x0, double y0, double x1, double y1) {
+        double margin = penRadius * DEFAULT_SIZE / 2 + 1;
+        double minX = Math.min(x0, x1) - margin, maxX = Math.max(x0, x1) + margin;
+        double minY = Math.min(y0, y1) - margin, maxY = Math.max(y0, y1) + margin;
+
+        // with a rotation active, the bounding box of the four rotated corners
+        if (rotation != 0) {
+            double cos = Math.cos(rotation), sin = Math.sin(rotation);
+            double dx0 = minX - rotationX, dx1 = maxX - rotationX;
+            double dy0 = minY - rotationY, dy1 = maxY - rotationY;
+            double ax = dx0 * cos, bx = dx1 * cos, ay = dy0 * sin, by = dy1 * sin;
+            double cx = dx0 * sin, ex = dx1 * sin, cy = dy0 * cos, ey = dy1 * cos;
+            minX = rotationX + Math.min(ax, bx) - Math.max(ay, by);
+            maxX = rotationX + Math.max(ax, bx) - Math.min(ay, by);
+            minY = rotationY + Math.min(cx, ex) + Math.min(cy, ey);
+            maxY = rotationY + Math.max(cx, ex) + Math.max(cy, ey);
+        }
+
+        // in offscreen image pixels
+        int scale = backingScale;
+        dirtyX0 = Math.min(dirtyX0, Math.max(0, (int) Math.floor(minX * scale)));
+        dirtyY0 = Math.min(dirtyY0, Math.max(0, (int) Math.floor(minY * scale)));
+        dirtyX1 = Math.max(dirtyX1, Math.min(offscreenImage.getWidth(),  (int) Math.ceil(maxX * scale)));
+        dirtyY1 = Math.max(dirtyY1, Math.min(offscreenImage.getHeight(), (int) Math.ceil(maxY * scale)));
+    }
+
+    private static void dirty(Rectangle2D bounds) {
+        dirty(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+    }
+
+    // mark as changed the bounding box of n shapes centered at (x[i], y[i]), in user coordinates,
+    // that extend hx[i] and hy[i] to either side (or nothing, if hx and hy are null)
+    private static void dirtyBatch(double[] x, double[] y, double[] hx, double[] hy, int n) {
+        if (n == 0) return;
+        double xmin = Double.POSITIVE_INFINITY, xmax = Double.NEGATIVE_INFINITY;
+        double ymin = Double.POSITIVE_INFINITY, ymax = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            double dx = hx == null ? 0 : hx[i];
+            double dy = hy == null ? 0 : hy[i];
+            xmin = Math.min(xmin, x[i] - dx);
+            xmax = Math.max(xmax, x[i] + dx);
+            ymin = Math.min(ymin, y[i] - dy);
+            ymax = Math.max(ymax, y[i] + dy);
+        }
+        dirty(scaleX(xmin), scaleY(ymin), scaleX(xmax), scaleY(ymax));
+    }
+
     /**
      * Enables double buffering. All subsequent calls to 
      * drawing methods such as {@code line()}, {@code circle()},
@@ -1784,7 +2687,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         else if ("jpg".equalsIgnoreCase(suffix)) {
             WritableRaster raster = onscreenImage.getRaster();
             WritableRaster newRaster;
-            newRaster = raster.createWritableChild(0, 0, width, height, 0, 0, new int[] {0, 1, 2});
+            newRaster = raster.createWritableChild(0, 0, raster.getWidth(), raster.getHeight(), 0, 0, new int[] {0, 1, 2});
             DirectColorModel cm = (DirectColorModel) onscreenImage.getColorModel();
             DirectColorModel newCM = new DirectColorModel(cm.getPixelSize(),
                                                           cm.getRedMask(),
@@ -1819,19 +2722,207 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     }
 
 
+   /***************************************************************************
+    *  Frame capture.
+    ***************************************************************************/
+
+    // buffers ready to receive a frame; their number bounds the frames waiting to be encoded
+    private static BlockingQueue<BufferedImage> captureBuffers;
+    private static ExecutorService captureEncoders;
+    private static String capturePattern, captureSuffix;
+    private static boolean captureBlocks;
+    private static long captureNextFrame;
+    private static final AtomicLong framesCaptured = new AtomicLong();
+    private static final AtomicLong framesDropped  = new AtomicLong();
+
+    /**
+     * Starts capturing frames to numbered image files.
+     * The file name of each frame is {@code String.format(pattern, n)}, where
+     * {@code n} is the frame number, starting at 0; for example,
+     * {@code "frames/frame%05d.png"}.
+     * <p>
+     * At most {@code capacity} frames wait to be encoded at a time. When all of
+     * them are in use, {@link #captureFrame()} either waits for a buffer to be freed
+     * ({@code block} is {@code true}) or discards the frame ({@code block} is
+     * {@code false}); a discarded frame leaves a gap in the numbering.
+     *
+     * @param  pattern the format of the file names, with a {@code .png} or {@code .jpg} extension
+     * @param  encoders the number of background threads that encode frames
+     * @param  capacity the number of frame buffers
+     * @param  block {@code true} to wait for a free buffer; {@code false} to discard the frame
+     * @throws IllegalArgumentException if {@code pattern} is {@code null} or has another extension
+     * @throws IllegalArgumentException unless {@code encoders} and {@code capacity} are positive
+     * @throws IllegalStateException if frames are already being captured
+     */
+    public static void startCapture(String pattern, int encoders, int capacity, boolean block) {
+        validateNotNull(pattern, "pattern");
+        String suffix = pattern.substring(pattern.lastIndexOf('.') + 1).toLowerCase();
+        if (!"png".equals(suffix) && !"jpg".equals(suffix))
+            throw new IllegalArgumentException("Invalid image file type: " + suffix);
+        if (encoders <= 0) throw new IllegalArgumentException("encoders must be positive");
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        if (captureEncoders != null) throw new IllegalStateException("frames are already being captured");
+
+        captureSuffix = suffix;
+        captureBuffers = new ArrayBlockingQueue<BufferedImage>(capacity);
+        for (int i = 0; i < capacity; i++)
+            captureBuffers.add(newCaptureBuffer());
+        captureEncoders = Executors.newFixedThreadPool(encoders, task -> {
+            Thread thread = new Thread(task, "StdDraw capture");
+            thread.setDaemon(true);
+            return thread;
+        });
+        capturePattern = pattern;
+        captureBlocks = block;
+        captureNextFrame = 0;
+        framesCaptured.set(0);
+        framesDropped.set(0);
+    }
+
+    /**
+     * Captures the frame shown by the last call to {@link #show()}.
+     * The frame is copied into a free buffer and encoded in the background.
+     *
+     * @throws IllegalStateException if frames are not being captured
+     */
+    public static void captureFrame() {
+        if (captureEncoders == null) throw new IllegalStateException("frames are not being captured");
+        long number = captureNextFrame++;
+        BufferedImage buffer;
+        if (captureBlocks) {
+            try {
+                buffer = captureBuffers.take();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                framesDropped.incrementAndGet();
+                return;
+            }
+        }
+        else {
+            buffer = captureBuffers.poll();
+            if (buffer == null) {
+                framesDropped.incrementAndGet();
+                return;
+            }
+        }
+
+        // the canvas may have been resized since the buffer was made
+        if (buffer.getWidth() != onscreenImage.getWidth() || buffer.getHeight() != onscreenImage.getHeight())
+            buffer = newCaptureBuffer();
+        // copied row by row through the rasters: taking the pixel array of onscreenImage
+        // would stop Java 2D from caching the image that every repaint draws
+        buffer.getRaster().setDataElements(0, 0, onscreenImage.getRaster());
+
+        BufferedImage frameBuffer = buffer;
+        File file = new File(String.format(capturePattern, number));
+        String suffix = captureSuffix;
+        BlockingQueue<BufferedImage> buffers = captureBuffers;
+        captureEncoders.execute(() -> {
+            try {
+                ImageIO.write(frameBuffer, suffix, file);
+                framesCaptured.incrementAndGet();
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+            finally {
+                buffers.offer(frameBuffer);
+            }
+        });
+    }
+
+    /**
+     * Stops capturing frames and waits until all the captured frames have been written.
+     * Does nothing if frames are not being captured.
+     */
+    public static void stopCapture() {
+        if (captureEncoders == null) return;
+        captureEncoders.shutdown();
+        try {
+            captureEncoders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        captureEncoders = null;
+        captureBuffers = null;
+    }
+
+    /**
+     * Returns the number of captured frames written to files since capture started.
+     *
+     * @return the number of frames written
+     */
+    public static long framesCaptured() {
+        return framesCaptured.get();
+    }
+
+    /**
+     * Returns the number of frames discarded since capture started because no buffer was free.
+     *
+     * @return the number of frames discarded
+     */
+    public static long framesDropped() {
+        return framesDropped.get();
+    }
+
+    // copy of the onscreen image: with alpha for PNG, opaque RGB for JPEG, which cannot encode alpha
+    private static BufferedImage newCaptureBuffer() {
+        int type = "png".equals(captureSuffix) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        return new BufferedImage(onscreenImage.getWidth(), onscreenImage.getHeight(), type);
+    }
+
+
    /***************************************************************************
     *  Mouse interactions.
     ***************************************************************************/
 
+    /**
+     * Type of the mouse event returned by {@link #nextMouseEvent()} when a button is pressed.
+     */
+    public static final int MOUSE_PRESSED = 1;
+
+    /**
+     * Type of the mouse event returned by {@link #nextMouseEvent()} when a button is released.
+     */
+    public static final int MOUSE_RELEASED = 2;
+
+    /**
+     * Type of the mouse event returned by {@link #nextMouseEvent()} when the mouse
+     * moves with a button pressed.
+     */
+    public static final int MOUSE_DRAGGED = 3;
+
+    /**
+     * Maximum number of mouse events that the queue holds before discarding new ones.
+     */
+    public static final int MOUSE_EVENT_CAPACITY = 1024;
+
+    // single-producer/single-consumer ring of mouse events: the event dispatch thread
+    // fills a slot and then publishes it by advancing mouseEventsWritten (a volatile
+    // write); the program's thread reads the slot and then frees it by advancing
+    // mouseEventsRead, so neither side ever takes a lock
+    private static final int MOUSE_EVENT_MASK = MOUSE_EVENT_CAPACITY - 1;
+    private static final int[]    mouseEventType = new int[MOUSE_EVENT_CAPACITY];
+    private static final double[] mouseEventX    = new double[MOUSE_EVENT_CAPACITY];
+    private static final double[] mouseEventY    = new double[MOUSE_EVENT_CAPACITY];
+    private static final long[]   mouseEventTime = new long[MOUSE_EVENT_CAPACITY];
+    private static volatile long mouseEventsWritten = 0;
+    private static volatile long mouseEventsRead = 0;
+    private static volatile long mouseEventsDropped = 0;
+
+    // the event most recently returned by nextMouseEvent(), owned by the consumer thread
+    private static double currentMouseEventX, currentMouseEventY;
+    private static long currentMouseEventTime;
+
     /**
      * Returns true if the mouse is being pressed.
      *
      * @return {@code true} if the mouse is being pressed; {@code false} otherwise
      */
     public static boolean isMousePressed() {
-        synchronized (mouseLock) {
-            return isMousePressed;
-        }
+        return isMousePressed;
     }
 
     /**
@@ -1842,31 +2933,125 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      */
     @Deprecated
     public static boolean mousePressed() {
-        synchronized (mouseLock) {
-            return isMousePressed;
-        }
+        return isMousePressed;
     }
 
     /**
      * Returns the <em>x</em>-coordinate of the mouse.
+     * The mouse may move between this call and a call to {@link #mouseY()};
+     * use {@link #mousePosition()} to get both coordinates of the same position.
      *
      * @return the <em>x</em>-coordinate of the mouse
      */
     public static double mouseX() {
-        synchronized (mouseLock) {
-            return mouseX;
-        }
+        return mousePosition[0];
     }
 
     /**
      * Returns the <em>y</em>-coordinate of the mouse.
+     * The mouse may move between this call and a call to {@link #mouseX()};
+     * use {@link #mousePosition()} to get both coordinates of the same position.
      *
      * @return <em>y</em>-coordinate of the mouse
      */
     public static double mouseY() {
-        synchronized (mouseLock) {
-            return mouseY;
+        return mousePosition[1];
+    }
+
+    /**
+     * Returns the position of the mouse.
+     *
+     * @return a new array with the <em>x</em>- and <em>y</em>-coordinates
+     *         of the same position of the mouse, in that order
+     */
+    public static double[] mousePosition() {
+        return mousePosition.clone();
+    }
+
+    /**
+     * Returns true if there is a mouse event that has not yet been processed.
+     * The queue must be drained from a single thread.
+     *
+     * @return {@code true} if there is a mouse event (that has not yet been processed
+     *         by {@link #nextMouseEvent()}); {@code false} otherwise
+     */
+    public static boolean hasNextMouseEvent() {
+        return mouseEventsRead != mouseEventsWritten;
+    }
+
+    /**
+     * Removes the oldest unprocessed mouse event from the queue and returns its type.
+     * Its position and time are then available from {@link #mouseEventX()},
+     * {@link #mouseEventY()}, and {@link #mouseEventTime()} until the next call.
+     * This method should be preceded by a call to {@link #hasNextMouseEvent()} to ensure
+     * that there is a next event to process.
+     *
+     * @return {@link #MOUSE_PRESSED}, {@link #MOUSE_RELEASED}, or {@link #MOUSE_DRAGGED}
+     * @throws NoSuchElementException if there is no remaining mouse event
+     */
+    public static int nextMouseEvent() {
+        long read = mouseEventsRead;
+        if (read == mouseEventsWritten) {
+            throw new NoSuchElementException("your program has already processed all mouse events");
         }
+        int slot = (int) read & MOUSE_EVENT_MASK;
+        int type = mouseEventType[slot];
+        currentMouseEventX = mouseEventX[slot];
+        currentMouseEventY = mouseEventY[slot];
+        currentMouseEventTime = mouseEventTime[slot];
+        mouseEventsRead = read + 1;
+        return type;
+    }
+
+    /**
+     * Returns the <em>x</em>-coordinate of the mouse event last returned by {@link #nextMouseEvent()}.
+     *
+     * @return the <em>x</em>-coordinate of the mouse when the event happened
+     */
+    public static double mouseEventX() {
+        return currentMouseEventX;
+    }
+
+    /**
+     * Returns the <em>y</em>-coordinate of the mouse event last returned by {@link #nextMouseEvent()}.
+     *
+     * @return the <em>y</em>-coordinate of the mouse when the event happened
+     */
+    public static double mouseEventY() {
+        return currentMouseEventY;
+    }
+
+    /**
+     * Returns the time of the mouse event last returned by {@link #nextMouseEvent()}.
+     *
+     * @return the time when the event was received, in the units of {@link System#nanoTime()}
+     */
+    public static long mouseEventTime() {
+        return currentMouseEventTime;
+    }
+
+    /**
+     * Returns the number of mouse events discarded because the queue was full.
+     *
+     * @return the number of mouse events discarded so far
+     */
+    public static long mouseEventsDropped() {
+        return mouseEventsDropped;
+    }
+
+    // called only from the event dispatch thread
+    private static void addMouseEvent(int type, double x, double y) {
+        long written = mouseEventsWritten;
+        if (written - mouseEventsRead == MOUSE_EVENT_CAPACITY) {
+            mouseEventsDropped = mouseEventsDropped + 1;
+            return;
+        }
+        int slot = (int) written & MOUSE_EVENT_MASK;
+        mouseEventType[slot] = type;
+        mouseEventX[slot] = x;
+        mouseEventY[slot] = y;
+        mouseEventTime[slot] = System.nanoTime();
+        mouseEventsWritten = written + 1;
     }
 
 
@@ -1899,11 +3084,10 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      */
     @Override
     public void mousePressed(MouseEvent e) {
-        synchronized (mouseLock) {
-            mouseX = StdDraw.userX(e.getX());
-            mouseY = StdDraw.userY(e.getY());
-            isMousePressed = true;
-        }
+        double[] position = StdDraw.userXY(e.getX(), e.getY());
+        mousePosition = position;
+        isMousePressed = true;
+        addMouseEvent(MOUSE_PRESSED, position[0], position[1]);
     }
 
     /**
@@ -1911,9 +3095,9 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      */
     @Override
     public void mouseReleased(MouseEvent e) {
-        synchronized (mouseLock) {
-            isMousePressed = false;
-        }
+        isMousePressed = false;
+        double[] position = StdDraw.userXY(e.getX(), e.getY());
+        addMouseEvent(MOUSE_RELEASED, position[0], position[1]);
     }
 
     /**
@@ -1921,10 +3105,9 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      */
     @Override
     public void mouseDragged(MouseEvent e)  {
-        synchronized (mouseLock) {
-            mouseX = StdDraw.userX(e.getX());
-            mouseY = StdDraw.userY(e.getY());
-        }
+        double[] position = StdDraw.userXY(e.getX(), e.getY());
+        mousePosition = position;
+        addMouseEvent(MOUSE_DRAGGED, position[0], position[1]);
     }
 
     /**
@@ -1932,10 +3115,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      */
     @Override
     public void mouseMoved(MouseEvent e) {
-        synchronized (mouseLock) {
-            mouseX = StdDraw.userX(e.getX());
-            mouseY = StdDraw.userY(e.getY());
-        }
+        mousePosition = StdDraw.userXY(e.getX(), e.getY());
     }
 
 
@@ -1943,6 +3123,24 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     *  Keyboard interactions.
     ***************************************************************************/
 
+    /**
+     * Maximum number of typed characters that are kept before discarding new ones.
+     */
+    public static final int KEY_TYPED_CAPACITY = 256;
+
+    // key codes currently pressed down, one bit per code; only the event dispatch
+    // thread writes it, so a plain read-modify-write of each word is enough
+    private static final int KEY_CODES = 1 << 16;
+    private static final AtomicLongArray keysDown = new AtomicLongArray(KEY_CODES / 64);
+
+    // single-producer/single-consumer ring of typed characters, published in the
+    // same way as the mouse events
+    private static final int KEY_TYPED_MASK = KEY_TYPED_CAPACITY - 1;
+    private static final char[] keysTyped = new char[KEY_TYPED_CAPACITY];
+    private static volatile long keysTypedWritten = 0;
+    private static volatile long keysTypedRead = 0;
+    private static volatile long keysTypedDropped = 0;
+
     /**
      * Returns true if the user has typed a key (that has not yet been processed).
      *
@@ -1950,9 +3148,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      *         by {@link #nextKeyTyped()}; {@code false} otherwise
      */
     public static boolean hasNextKeyTyped() {
-        synchronized (keyLock) {
-            return !keysTyped.isEmpty();
-        }
+        return keysTypedRead != keysTypedWritten;
     }
 
     /**
@@ -1968,13 +3164,22 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      * @throws NoSuchElementException if there is no remaining key
      */
     public static char nextKeyTyped() {
-        synchronized (keyLock) {
-            if (keysTyped.isEmpty()) {
-                throw new NoSuchElementException("your program has already processed all keystrokes");
-            }
-            return keysTyped.remove(keysTyped.size() - 1);
-            // return keysTyped.removeLast();
+        long read = keysTypedRead;
+        if (read == keysTypedWritten) {
+            throw new NoSuchElementException("your program has already processed all keystrokes");
         }
+        char c = keysTyped[(int) read & KEY_TYPED_MASK];
+        keysTypedRead = read + 1;
+        return c;
+    }
+
+    /**
+     * Returns the number of typed keys discarded because too many were waiting to be processed.
+     *
+     * @return the number of typed keys discarded so far
+     */
+    public static long keysTypedDropped() {
+        return keysTypedDropped;
     }
 
     /**
@@ -1990,9 +3195,8 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      *         {@code false} otherwise
      */
     public static boolean isKeyPressed(int keycode) {
-        synchronized (keyLock) {
-            return keysDown.contains(keycode);
-        }
+        if (keycode < 0 || keycode >= KEY_CODES) return false;
+        return (keysDown.get(keycode >>> 6) & (1L << keycode)) != 0;
     }
 
 
@@ -2001,9 +3205,13 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      */
     @Override
     public void keyTyped(KeyEvent e) {
-        synchronized (keyLock) {
-            keysTyped.addFirst(e.getKeyChar());
+        long written = keysTypedWritten;
+        if (written - keysTypedRead == KEY_TYPED_CAPACITY) {
+            keysTypedDropped = keysTypedDropped + 1;
+            return;
         }
+        keysTyped[(int) written & KEY_TYPED_MASK] = e.getKeyChar();
+        keysTypedWritten = written + 1;
     }
 
     /**
@@ -2011,9 +3219,10 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      */
     @Override
     public void keyPressed(KeyEvent e) {
-        synchronized (keyLock) {
-            keysDown.add(e.getKeyCode());
-        }
+        int keycode = e.getKeyCode();
+        if (keycode < 0 || keycode >= KEY_CODES) return;
+        int word = keycode >>> 6;
+        keysDown.set(word, keysDown.get(word) | (1L << keycode));
     }
 
     /**
@@ -2021,9 +3230,10 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      */
     @Override
     public void keyReleased(KeyEvent e) {
-        synchronized (keyLock) {
-            keysDown.remove(e.getKeyCode());
-        }
+        int keycode = e.getKeyCode();
+        if (keycode < 0 || keycode >= KEY_CODES) return;
+        int word = keycode >>> 6;
+        keysDown.set(word, keysDown.get(word) & ~(1L << keycode));
     }
 
 
@@ -2032,13 +3242,17 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     ***************************************************************************/
 
     private static class RetinaImageIcon extends ImageIcon {
-    
-        public RetinaImageIcon(Image image) {
+
+        // image pixels per screen pixel
+        private final int scale;
+
+        public RetinaImageIcon(Image image, int scale) {
             super(image);
+            this.scale = scale;
         }
 
         public int getIconWidth() {
-            return super.getIconWidth() / 2;
+            return super.getIconWidth() / scale;
         }
 
         /**
@@ -2047,16 +3261,20 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
          * @return the height in pixels of this icon
          */
         public int getIconHeight() {
-            return super.getIconHeight() / 2;
+            return super.getIconHeight() / scale;
         }
 
         public synchronized void paintIcon(Component c, Graphics g, int x, int y) {
+            if (scale == 1) {
+                super.paintIcon(c, g, x, y);
+                return;
+            }
             Graphics2D g2 = (Graphics2D) g.create();
             g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,RenderingHints.VALUE_INTERPOLATION_BICUBIC);
             g2.setRenderingHint(RenderingHints.KEY_RENDERING,RenderingHints.VALUE_RENDER_QUALITY);
             g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_ON);
-            g2.scale(0.5, 0.5);
-            super.paintIcon(c, g2, x * 2, y * 2);
+            g2.scale(1.0 / scale, 1.0 / scale);
+            super.paintIcon(c, g2, x * scale, y * scale);
             g2.dispose();
         }
     }